@@ -0,0 +1,102 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * Checks that a {@link CameraArray} slot drifts as a {@link CameraModel}
+ * does, given the same rotate, zoom and pan pushes, at 60 and 20 fps, until
+ * both come to rest. Run with <code>ant check</code>; exits with an error if
+ * a check fails.
+ */
+public class ArrayDamping {
+	private static final int SLOT = 3;
+	private static final int FRAMES = 600;
+
+	public static void main(final String[] args) {
+		final boolean at60 = check(1);
+		final boolean at20 = check(3);
+		if (!at60 || !at20) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean check(final int framesPerUpdate) {
+		final VirtualClock clock = new VirtualClock(60.0 / framesPerUpdate);
+		final CameraModel model = new CameraModel(500);
+		model.setClock(clock);
+		model.update();
+		final CameraArray array = new CameraArray(8, 500);
+
+		double worst = 0;
+		int frame = 0;
+		for (; frame < FRAMES; frame += framesPerUpdate) {
+			if (frame == 0 || frame == 30) {
+				push(model, array, frame == 0 ? 1 : -0.5);
+			}
+			final boolean waking = !model.isMoving() || frame == 0;
+			clock.step();
+			model.update();
+			// the model counts the first update after waking as one frame
+			array.step(waking ? 1 / 60.0 : clock.getStepNanos() / 1e9);
+			worst = Math.max(worst, difference(model, array));
+			if (!model.isMoving() && !array.isMoving(SLOT)) {
+				break;
+			}
+		}
+		final boolean ok = worst < 1e-9 && !model.isMoving() && !array.isMoving(SLOT);
+		System.out.println(String.format(
+				"%2d fps  at rest after %d frames, largest difference %.3g  %s",
+				60 / framesPerUpdate, frame, worst, ok ? "ok" : "FAILED"));
+		return ok;
+	}
+
+	/**
+	 * Push both, as a drag from the middle of the viewport, a wheel turn and
+	 * a right-drag would push the model.
+	 */
+	private static void push(final CameraModel model, final CameraArray array,
+			final double scale) {
+		final double dx = 20 * scale, dy = -10 * scale;
+		// as CameraModel.dragRotate() scales a drag
+		final double mult = -Math.pow(Math.log10(1 + model.getDistance()), 0.5)
+				* 0.00125f;
+		model.dragRotate(dx, dy, 0, 0);
+		array.rotateImpulse(SLOT, -dy * mult, dx * mult, 0);
+		model.wheelZoom(2 * scale);
+		array.zoomImpulse(SLOT, 2 * scale);
+		model.dragPan(16 * scale, 8 * scale);
+		array.panImpulse(SLOT, 2 * scale, scale);
+	}
+
+	private static double difference(final CameraModel model, final CameraArray array) {
+		final MutableRotation r = array.getRotation(SLOT, new MutableRotation());
+		final MutableVector3D c = array.getLookAt(SLOT, new MutableVector3D());
+		final MutableRotation mr = model.rotation();
+		final MutableVector3D mc = model.center();
+		double d = Math.abs(model.getDistance() - array.getDistance(SLOT))
+				/ model.getDistance();
+		d = Math.max(d, Math.abs(mc.getX() - c.getX()));
+		d = Math.max(d, Math.abs(mc.getY() - c.getY()));
+		d = Math.max(d, Math.abs(mc.getZ() - c.getZ()));
+		d = Math.max(d, Math.abs(mr.getQ0() - r.getQ0()));
+		d = Math.max(d, Math.abs(mr.getQ1() - r.getQ1()));
+		d = Math.max(d, Math.abs(mr.getQ2() - r.getQ2()));
+		return Math.max(d, Math.abs(mr.getQ3() - r.getQ3()));
+	}
+}
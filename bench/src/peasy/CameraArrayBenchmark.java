@@ -0,0 +1,83 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One step of many drifting cameras at once, serially and on the common
+ * fork/join pool: with every camera pushed each step, and with only every
+ * seventh, the rest at rest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CameraArrayBenchmark {
+	@Param({ "1000", "10000" })
+	public int size;
+
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	private CameraArray cameras;
+	// pushes alternate in direction, so that zoom and pan stay bounded
+	private double sign = 1;
+
+	@Setup
+	public void setup() {
+		cameras = new CameraArray(size, 500);
+		cameras.setParallel(parallel);
+	}
+
+	@Benchmark
+	public double step() {
+		return push(1);
+	}
+
+	@Benchmark
+	public double stepMostlyIdle() {
+		return push(7);
+	}
+
+	private double push(final int stride) {
+		sign = -sign;
+		for (int i = 0; i < size; i += stride) {
+			cameras.rotateImpulse(i, 0.01, -0.02, 0.005);
+			cameras.zoomImpulse(i, 0.5 * sign);
+			cameras.panImpulse(i, sign, -sign);
+		}
+		cameras.step(1 / 60.0);
+		return cameras.getDistance(0);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.RotationOrder;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Checks that each {@link CameraStateCodec} format gives back the states
+ * that Java serialization does: exactly, for FLOAT64; rounded to floats, for
+ * FLOAT32; and with the rotation within a few millionths of a radian, for
+ * QUANTIZED. Run with <code>ant check</code>; exits with an error if a check
+ * fails.
+ */
+public class CodecRoundTrip {
+	// how far a quantized rotation may stray, in radians
+	private static final double QUANTIZED_TOLERANCE = 1e-5;
+	// and a float one, once renormalized
+	private static final double FLOAT_TOLERANCE = 1e-6;
+
+	public static void main(final String[] args) throws Exception {
+		final CameraState[] states = {
+				// the default camera
+				new CameraState(new Rotation(), Vector3D.zero, 500),
+				// at the smallest allowed distance
+				new CameraState(new Rotation(RotationOrder.XYZ, 0.7, -1.9, 2.4),
+						new Vector3D(123.25, -4567.5, 0.001),
+						CameraModel.SMALLEST_MINIMUM_DISTANCE),
+				// nearly a half turn, at the default maximum distance
+				new CameraState(new Rotation(new Vector3D(1, -2, 0.5), Math.PI - 1e-4),
+						new Vector3D(-1e5, 3, 7e4), Double.MAX_VALUE),
+				// all four quaternion components alike
+				new CameraState(new Rotation(0.5, -0.5, 0.5, -0.5, false),
+						new Vector3D(0.1, 0.2, 0.3), 1) };
+		final CameraState[] expected = serializeAndBack(states);
+
+		boolean ok = true;
+		for (final CameraStateCodec.Format format : CameraStateCodec.Format.values()) {
+			for (final ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN,
+					ByteOrder.LITTLE_ENDIAN }) {
+				final CameraStateCodec codec = new CameraStateCodec(format);
+				final ByteBuffer buffer = ByteBuffer.allocate(states.length * codec.size())
+						.order(order);
+				codec.encode(states, 0, states.length, buffer);
+				if (buffer.position() != buffer.capacity()) {
+					ok = fail(format, order, "wrote " + buffer.position() + " bytes, not "
+							+ buffer.capacity());
+				}
+				buffer.flip();
+				final CameraState[] decoded = new CameraState[states.length];
+				codec.decode(buffer, decoded, 0, states.length);
+				for (int i = 0; i < states.length; i++) {
+					final String problem = compare(format, expected[i], decoded[i]);
+					if (problem != null) {
+						ok = fail(format, order, "state " + i + ": " + problem);
+					}
+				}
+			}
+			System.out.println(String.format("%-10s %2d bytes a state", format,
+					format.size()));
+		}
+		System.out.println(String.format("Serializable: %d bytes for %d states",
+				serialize(states).length, states.length));
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return what's wrong with the decoded state, or null
+	 */
+	private static String compare(final CameraStateCodec.Format format,
+			final CameraState expected, final CameraState decoded) {
+		final Rotation a = expected.rotation, b = decoded.rotation;
+		final Vector3D c = expected.center, d = decoded.center;
+		if (format == CameraStateCodec.Format.FLOAT64) {
+			if (a.getQ0() != b.getQ0() || a.getQ1() != b.getQ1() || a.getQ2() != b.getQ2()
+					|| a.getQ3() != b.getQ3()) {
+				return "rotation " + describe(b) + ", not " + describe(a);
+			}
+			if (c.getX() != d.getX() || c.getY() != d.getY() || c.getZ() != d.getZ()) {
+				return "center " + describe(d) + ", not " + describe(c);
+			}
+			if (expected.distance != decoded.distance) {
+				return "distance " + decoded.distance + ", not " + expected.distance;
+			}
+			return null;
+		}
+		final double angle = angle(a, b);
+		final double tolerance = format == CameraStateCodec.Format.QUANTIZED ? QUANTIZED_TOLERANCE
+				: FLOAT_TOLERANCE;
+		if (!(angle <= tolerance)) {
+			return "rotation off by " + angle + " radians";
+		}
+		if (d.getX() != (float)c.getX() || d.getY() != (float)c.getY()
+				|| d.getZ() != (float)c.getZ()) {
+			return "center " + describe(d) + ", not " + describe(c) + " as floats";
+		}
+		final double distance = (float)Math.min(expected.distance, Float.MAX_VALUE);
+		if (decoded.distance != distance) {
+			return "distance " + decoded.distance + ", not " + distance;
+		}
+		return null;
+	}
+
+	private static boolean fail(final CameraStateCodec.Format format,
+			final ByteOrder order, final String problem) {
+		System.out.println("FAILED " + format + ", " + order + ": " + problem);
+		return false;
+	}
+
+	private static byte[] serialize(final CameraState[] states) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(states);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static CameraState[] serializeAndBack(final CameraState[] states)
+			throws IOException, ClassNotFoundException {
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				serialize(states)));
+		try {
+			return (CameraState[])in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static double angle(final Rotation a, final Rotation b) {
+		final double dot = Math.abs(a.getQ0() * b.getQ0() + a.getQ1() * b.getQ1()
+				+ a.getQ2() * b.getQ2() + a.getQ3() * b.getQ3());
+		return 2 * Math.acos(Math.min(dot, 1));
+	}
+
+	private static String describe(final Rotation r) {
+		return "(" + r.getQ0() + ", " + r.getQ1() + ", " + r.getQ2() + ", " + r.getQ3()
+				+ ")";
+	}
+
+	private static String describe(final Vector3D v) {
+		return "(" + v.getX() + ", " + v.getY() + ", " + v.getZ() + ")";
+	}
+}
@@ -0,0 +1,259 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Checks that a batch of commands sent through a {@link CameraCommandQueue}
+ * leaves a camera where the same calls, made directly before the same update,
+ * leave another. Each batch is followed frame by frame, at 60 fps on a
+ * {@link VirtualClock}, for two seconds. Also checks that a camera at rest
+ * notices commands queued for it. Run with
+ * <code>ant check</code>; exits with an error if a check fails.
+ */
+public class CommandQueueReplay {
+	private static final int FRAMES = 120;
+
+	private static final CameraState A = new CameraState(new Rotation(Vector3D.plusJ,
+			0.5), new Vector3D(10, 20, 30), 200);
+	private static final CameraState B = new CameraState(new Rotation(Vector3D.plusI,
+			-1), new Vector3D(-40, 0, 5), 800);
+
+	/**
+	 * The methods a command queue and a camera share.
+	 */
+	private interface Target {
+		void setState(CameraState state, long animationTimeMillis);
+
+		void reset(long animationTimeMillis);
+
+		void lookAt(double x, double y, double z, long animationTimeMillis);
+
+		void lookAt(double x, double y, double z, double distance,
+				long animationTimeMillis);
+
+		void setDistance(double distance, long animationTimeMillis);
+
+		void pan(double dx, double dy);
+
+		void rotateX(double angle);
+	}
+
+	private interface Batch {
+		void send(Target target);
+	}
+
+	public static void main(final String[] args) {
+		boolean ok = true;
+		ok &= check("instant, then animated state", new Batch() {
+			public void send(final Target t) {
+				t.setState(A, 0);
+				t.setState(B, 1000);
+			}
+		});
+		ok &= check("animated, then instant state", new Batch() {
+			public void send(final Target t) {
+				t.setState(B, 1000);
+				t.setState(A, 0);
+			}
+		});
+		ok &= check("instant states around a turn", new Batch() {
+			public void send(final Target t) {
+				t.setState(A, 0);
+				t.rotateX(0.3);
+				t.pan(5, 5);
+				t.setState(B, 0);
+			}
+		});
+		ok &= check("instant state, animated move, reset", new Batch() {
+			public void send(final Target t) {
+				t.setState(A, 0);
+				t.lookAt(1, 2, 3, 600);
+				t.reset(0);
+			}
+		});
+		ok &= check("distance, then instant state", new Batch() {
+			public void send(final Target t) {
+				t.setDistance(100, 0);
+				t.setState(A, 0);
+			}
+		});
+		ok &= check("look at with a distance, then without", new Batch() {
+			public void send(final Target t) {
+				t.lookAt(5, 5, 5, 300, 0);
+				t.lookAt(-5, 0, 0, 0);
+			}
+		});
+		ok &= check("look at without a distance, then with", new Batch() {
+			public void send(final Target t) {
+				t.lookAt(-5, 0, 0, 0);
+				t.setDistance(700, 400);
+				t.lookAt(5, 5, 5, 300, 0);
+			}
+		});
+		ok &= check("animated, then instant distance", new Batch() {
+			public void send(final Target t) {
+				t.setDistance(100, 500);
+				t.setDistance(900, 0);
+				t.setDistance(300, 250);
+			}
+		});
+		ok &= checkAtRest();
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * A camera at rest, driven only while {@link CameraModel#isMoving()},
+	 * must still pick up commands queued meanwhile.
+	 */
+	private static boolean checkAtRest() {
+		final VirtualClock clock = new VirtualClock(60);
+		final CameraModel model = new CameraModel(500);
+		model.setClock(clock);
+		model.update();
+		final boolean restedFirst = !model.isMoving();
+		model.getCommandQueue().setDistance(200, 100);
+		model.getCommandQueue().pan(10, 0);
+		int frames = 0;
+		while (model.isMoving() && frames < 1000) {
+			clock.step();
+			model.update();
+			frames++;
+		}
+		final boolean ok = restedFirst && model.getDistance() == 200
+				&& model.center().getX() != 0;
+		System.out.println(String.format(
+				"%-40s distance %.1f after %d frames  %s", "queued while at rest",
+				model.getDistance(), frames, ok ? "ok" : "FAILED"));
+		return ok;
+	}
+
+	private static boolean check(final String name, final Batch batch) {
+		final VirtualClock clock = new VirtualClock(60);
+		final CameraModel queued = new CameraModel(500);
+		final CameraModel direct = new CameraModel(500);
+		queued.setClock(clock);
+		direct.setClock(clock);
+		queued.update();
+		direct.update();
+
+		// the queue applies its commands in the update that follows
+		clock.step();
+		batch.send(queueTarget(queued.getCommandQueue()));
+		batch.send(modelTarget(direct));
+		double worst = 0;
+		for (int frame = 0; frame < FRAMES; frame++) {
+			if (frame > 0) {
+				clock.step();
+			}
+			queued.update();
+			direct.update();
+			worst = Math.max(worst, difference(queued, direct));
+		}
+		final boolean ok = worst < 1e-9;
+		System.out.println(String.format("%-40s largest difference %.3g  %s", name,
+				worst, ok ? "ok" : "FAILED"));
+		return ok;
+	}
+
+	private static double difference(final CameraModel a, final CameraModel b) {
+		final MutableRotation ra = a.rotation(), rb = b.rotation();
+		final MutableVector3D ca = a.center(), cb = b.center();
+		double d = Math.abs(a.getDistance() - b.getDistance());
+		d = Math.max(d, Math.abs(ca.getX() - cb.getX()));
+		d = Math.max(d, Math.abs(ca.getY() - cb.getY()));
+		d = Math.max(d, Math.abs(ca.getZ() - cb.getZ()));
+		d = Math.max(d, Math.abs(ra.getQ0() - rb.getQ0()));
+		d = Math.max(d, Math.abs(ra.getQ1() - rb.getQ1()));
+		d = Math.max(d, Math.abs(ra.getQ2() - rb.getQ2()));
+		return Math.max(d, Math.abs(ra.getQ3() - rb.getQ3()));
+	}
+
+	private static Target queueTarget(final CameraCommandQueue q) {
+		return new Target() {
+			public void setState(final CameraState state, final long millis) {
+				q.setState(state, millis);
+			}
+
+			public void reset(final long millis) {
+				q.reset(millis);
+			}
+
+			public void lookAt(final double x, final double y, final double z,
+					final long millis) {
+				q.lookAt(x, y, z, millis);
+			}
+
+			public void lookAt(final double x, final double y, final double z,
+					final double distance, final long millis) {
+				q.lookAt(x, y, z, distance, millis);
+			}
+
+			public void setDistance(final double distance, final long millis) {
+				q.setDistance(distance, millis);
+			}
+
+			public void pan(final double dx, final double dy) {
+				q.pan(dx, dy);
+			}
+
+			public void rotateX(final double angle) {
+				q.rotateX(angle);
+			}
+		};
+	}
+
+	private static Target modelTarget(final CameraModel m) {
+		return new Target() {
+			public void setState(final CameraState state, final long millis) {
+				m.setState(state, millis);
+			}
+
+			public void reset(final long millis) {
+				m.reset(millis);
+			}
+
+			public void lookAt(final double x, final double y, final double z,
+					final long millis) {
+				m.lookAt(x, y, z, millis);
+			}
+
+			public void lookAt(final double x, final double y, final double z,
+					final double distance, final long millis) {
+				m.lookAt(x, y, z, distance, millis);
+			}
+
+			public void setDistance(final double distance, final long millis) {
+				m.setDistance(distance, millis);
+			}
+
+			public void pan(final double dx, final double dy) {
+				m.pan(dx, dy);
+			}
+
+			public void rotateX(final double angle) {
+				m.rotateX(angle);
+			}
+		};
+	}
+}
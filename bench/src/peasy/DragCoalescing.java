@@ -0,0 +1,126 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.Random;
+
+/**
+ * Checks that drags coalesced between frames turn the camera as they would
+ * one by one: two headless sketches get the same drags, several per frame,
+ * through {@link processing.core.PApplet#handleMethods(String, Object[])}.
+ * One camera rotates as it does by default, summing each frame's impulses;
+ * the other through damped actions of its own which take each drag's
+ * impulse as it arrives. Their rotations are compared every frame, until
+ * both come to rest. Run with <code>ant check</code>; exits with an error if
+ * a check fails.
+ */
+public class DragCoalescing {
+	private static final int FRAMES = 120;
+
+	public static void main(final String[] args) {
+		final HeadlessSketch coalesced = new HeadlessSketch(640, 480);
+		final HeadlessSketch perEvent = new HeadlessSketch(640, 480);
+		final PeasyCam a = coalesced.camera(0, 0, 640, 480);
+		final PeasyCam b = perEvent.camera(0, 0, 640, 480);
+		b.setLeftDragHandler(perEventRotate(perEvent, b));
+		coalesced.frame();
+		perEvent.frame();
+
+		final Random random = new Random(1);
+		int x = 320, y = 240, events = 0;
+		coalesced.press(x, y);
+		perEvent.press(x, y);
+		double worst = 0;
+		for (int frame = 0; frame < FRAMES; frame++) {
+			for (int n = 1 + random.nextInt(6); n > 0; n--) {
+				x = Math.min(Math.max(x + random.nextInt(21) - 10, 0), 639);
+				y = Math.min(Math.max(y + random.nextInt(21) - 10, 0), 479);
+				coalesced.drag(x, y);
+				perEvent.drag(x, y);
+				events++;
+			}
+			coalesced.frame();
+			perEvent.frame();
+			worst = Math.max(worst, difference(a, b));
+		}
+		coalesced.release();
+		perEvent.release();
+		int frames = 0;
+		while ((!a.isSleeping() || !b.isSleeping()) && frames < 6000) {
+			coalesced.frame();
+			perEvent.frame();
+			worst = Math.max(worst, difference(a, b));
+			frames++;
+		}
+
+		final boolean ok = worst < 1e-12 && a.isSleeping() && b.isSleeping();
+		System.out.println(String.format(
+				"%d drags over %d frames, at rest %d frames later, largest difference %.3g  %s",
+				events, FRAMES, frames, worst, ok ? "ok" : "FAILED"));
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * A rotating drag handler, which gates each axis by the pointer's
+	 * position as CameraModel.dragRotate() does, but issues each drag's
+	 * impulses immediately.
+	 */
+	private static PeasyDragHandler perEventRotate(final HeadlessSketch sketch,
+			final PeasyCam cam) {
+		final CameraModel model = cam.getModel();
+		final DampedAction[] axes = new DampedAction[3];
+		for (int i = 0; i < axes.length; i++) {
+			final int axis = i;
+			axes[i] = new DampedAction(model) {
+				@Override
+				protected void behave(final double velocity) {
+					model.rotation().applyToAxisAngle(axis == 0 ? 1 : 0, axis == 1 ? 1 : 0,
+							axis == 2 ? 1 : 0, velocity);
+				}
+			};
+		}
+		return new PeasyDragHandler() {
+			public void handleDrag(final double dx, final double dy) {
+				final int[] v = cam.getViewport();
+				final double ndcX = Math.min(Math.max((sketch.mouseX - v[0])
+						/ (double)v[2], 0), 1) * 2 - 1;
+				final double ndcY = Math.min(Math.max((sketch.mouseY - v[1])
+						/ (double)v[3], 0), 1) * 2 - 1;
+				final double mult = -Math.pow(Math.log10(1 + model.getDistance()), 0.5)
+						* 0.00125f;
+				final double dmx = dx * mult;
+				final double dmy = dy * mult;
+				axes[1].impulse(+dmx * (1.0 - ndcY * ndcY));
+				axes[0].impulse(-dmy * (1.0 - ndcX * ndcX));
+				axes[2].impulse(-dmx * ndcY + dmy * ndcX);
+			}
+		};
+	}
+
+	private static double difference(final PeasyCam a, final PeasyCam b) {
+		final MutableRotation ra = a.getModel().rotation();
+		final MutableRotation rb = b.getModel().rotation();
+		double d = Math.abs(ra.getQ0() - rb.getQ0());
+		d = Math.max(d, Math.abs(ra.getQ1() - rb.getQ1()));
+		d = Math.max(d, Math.abs(ra.getQ2() - rb.getQ2()));
+		return Math.max(d, Math.abs(ra.getQ3() - rb.getQ3()));
+	}
+}
@@ -0,0 +1,152 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Checks the sketch's draw hook, run through
+ * {@link processing.core.PApplet#handleMethods(String)} as Processing does:
+ * that every moving camera is updated in every frame, however many fall
+ * asleep in it; that cameras at rest sleep and don't change; that commands
+ * queued from another thread wake a sleeping camera at the next frame; and
+ * that disposing of the sketch closes a recorder the camera made. Run with
+ * <code>ant check</code>; exits with an error if a check fails.
+ */
+public class DrawDispatch {
+	private static boolean ok = true;
+
+	public static void main(final String[] args) throws Exception {
+		final HeadlessSketch sketch = new HeadlessSketch(800, 600);
+		final PeasyCam[] cams = new PeasyCam[4];
+		for (int i = 0; i < cams.length; i++) {
+			cams[i] = sketch.camera(200 * i, 0, 200, 600);
+		}
+		final CameraCommandQueue queue = cams[3].getCommandQueue();
+		sketch.frame();
+
+		// transitions of different lengths, so that the cameras fall asleep in
+		// different frames
+		final long[] millis = { 100, 500, 300, 200 };
+		for (int i = 0; i < cams.length; i++) {
+			cams[i].lookAt(i, i, i, millis[i]);
+		}
+		int missed = 0;
+		int frames = 0;
+		while (!asleep(cams) && frames < 600) {
+			final boolean[] awake = new boolean[cams.length];
+			final long[] before = new long[cams.length];
+			for (int i = 0; i < cams.length; i++) {
+				awake[i] = !cams[i].isSleeping();
+				before[i] = cams[i].getStateVersion();
+			}
+			sketch.frame();
+			frames++;
+			for (int i = 0; i < cams.length; i++) {
+				if (awake[i] && cams[i].getStateVersion() == before[i]) {
+					missed++;
+				}
+			}
+		}
+		check("every awake camera updated", String.format(
+				"%d frames, %d missed updates", frames, missed), missed == 0
+				&& asleep(cams) && frames >= 30);
+
+		final long[] rest = versions(cams);
+		for (int i = 0; i < 30; i++) {
+			sketch.frame();
+		}
+		check("cameras at rest unchanged", "30 frames", asleep(cams)
+				&& Arrays.equals(rest, versions(cams)));
+
+		// from another thread, to a sleeping camera
+		send(new Runnable() {
+			public void run() {
+				queue.lookAt(10, 20, 30, 0);
+			}
+		});
+		final boolean slept = cams[3].isSleeping();
+		sketch.frame();
+		final float[] at = cams[3].getLookAt();
+		check("instant command at next frame", String.format(
+				"looking at (%.0f, %.0f, %.0f)", at[0], at[1], at[2]), slept
+				&& at[0] == 10 && at[1] == 20 && at[2] == 30 && asleep(cams));
+
+		send(new Runnable() {
+			public void run() {
+				queue.setDistance(200, 200);
+			}
+		});
+		frames = 0;
+		do {
+			sketch.frame();
+			frames++;
+		} while (!cams[3].isSleeping() && frames < 600);
+		check("queued transition runs to the end", String.format(
+				"%d frames, distance %.1f", frames, cams[3].getDistance()), frames >= 12
+				&& cams[3].getDistance() == 200 && asleep(cams));
+
+		final File file = File.createTempFile("peasycam", ".track");
+		file.deleteOnExit();
+		final CameraRecorder recorder = cams[0].record(file);
+		for (int i = 0; i < 10; i++) {
+			sketch.frame();
+		}
+		sketch.disposeHooks();
+		final CameraTrackPlayer player = new CameraTrackPlayer(file, new CameraModel(500));
+		final long records = player.getRecordCount();
+		player.close();
+		check("dispose closes the recorder", records + " records",
+				recorder.isClosed() && records >= 10);
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	private static void send(final Runnable commands) throws InterruptedException {
+		final Thread thread = new Thread(commands);
+		thread.start();
+		thread.join();
+	}
+
+	private static void check(final String name, final String result,
+			final boolean passed) {
+		System.out.println(String.format("%-34s %-30s %s", name, result,
+				passed ? "ok" : "FAILED"));
+		ok &= passed;
+	}
+
+	private static long[] versions(final PeasyCam[] cams) {
+		final long[] versions = new long[cams.length];
+		for (int i = 0; i < cams.length; i++) {
+			versions[i] = cams[i].getStateVersion();
+		}
+		return versions;
+	}
+
+	private static boolean asleep(final PeasyCam[] cams) {
+		for (final PeasyCam cam : cams) {
+			if (!cam.isSleeping()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
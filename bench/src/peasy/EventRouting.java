@@ -0,0 +1,135 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * Checks how a sketch's mouse events reach its cameras, by sending them
+ * through {@link processing.core.PApplet#handleMethods(String, Object[])} as
+ * Processing does: wheel events go to the camera under the pointer, the last
+ * activated where viewports overlap; a drag stays with the camera that saw
+ * the press, wherever the pointer goes, until the release; and a drag that
+ * starts outside every viewport moves no camera. Run with
+ * <code>ant check</code>; exits with an error if a check fails.
+ */
+public class EventRouting {
+	private static final String[] NAMES = { "a", "b", "c" };
+
+	private static HeadlessSketch sketch;
+	private static PeasyCam[] cams;
+	private static boolean ok = true;
+
+	public static void main(final String[] args) {
+		sketch = new HeadlessSketch(800, 800);
+		// b overlaps a's lower right quarter, and c is a strip across both
+		cams = new PeasyCam[] { sketch.camera(0, 0, 400, 400),
+				sketch.camera(200, 200, 400, 400), sketch.camera(300, 0, 100, 800) };
+		sketch.frame();
+
+		wheel("inside a alone", 100, 100, 0);
+		wheel("where a and b overlap", 250, 250, 1);
+		wheel("where all three overlap", 350, 250, 2);
+		wheel("inside b alone", 500, 500, 1);
+		wheel("outside every viewport", 700, 100, 3);
+
+		// activated again, a is now the last
+		cams[0].setActive(false);
+		cams[0].setActive(true);
+		wheel("a, after reactivating it", 350, 250, 0);
+		cams[0].setActive(false);
+		wheel("a, inactive", 100, 100, 3);
+		cams[0].setActive(true);
+
+		// moved away, c no longer covers the overlap
+		cams[2].setViewport(700, 0, 100, 800);
+		wheel("where c was", 390, 390, 0);
+		wheel("c, at its new place", 750, 100, 2);
+
+		drag("drag from a across b and c", 100, 100, new int[][] { { 250, 250 },
+				{ 350, 300 }, { 750, 500 }, { 900, 900 }, { 300, 150 } }, 0);
+		drag("drag from b into a", 500, 500, new int[][] { { 300, 300 },
+				{ 100, 100 } }, 1);
+		drag("drag from outside into a", 650, 100, new int[][] { { 300, 100 },
+				{ 100, 100 } }, 3);
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	private static void wheel(final String name, final int x, final int y,
+			final int expected) {
+		final long[] before = versions();
+		sketch.wheel(x, y, 1);
+		sketch.frame();
+		check(name, before, expected);
+	}
+
+	private static void drag(final String name, final int x, final int y,
+			final int[][] path, final int expected) {
+		final long[] before = versions();
+		sketch.press(x, y);
+		for (final int[] p : path) {
+			sketch.drag(p[0], p[1]);
+			sketch.frame();
+		}
+		sketch.release();
+		check(name, before, expected);
+	}
+
+	/**
+	 * Check that the expected camera moved, and no other, and let it come to
+	 * rest for the next check.
+	 */
+	private static void check(final String name, final long[] before,
+			final int expected) {
+		final long[] after = versions();
+		int moved = 0;
+		final StringBuilder which = new StringBuilder();
+		for (int i = 0; i < cams.length; i++) {
+			if (after[i] != before[i]) {
+				moved++;
+				which.append(NAMES[i]);
+			}
+		}
+		final boolean passed = expected == cams.length ? moved == 0
+				: moved == 1 && after[expected] != before[expected];
+		System.out.println(String.format("%-30s moved %-5s  %s", name,
+				moved == 0 ? "none" : which, passed ? "ok" : "FAILED"));
+		ok &= passed;
+		while (!asleep()) {
+			sketch.frame();
+		}
+	}
+
+	private static long[] versions() {
+		final long[] versions = new long[cams.length];
+		for (int i = 0; i < cams.length; i++) {
+			versions[i] = cams[i].getStateVersion();
+		}
+		return versions;
+	}
+
+	private static boolean asleep() {
+		for (final PeasyCam cam : cams) {
+			if (!cam.isSleeping()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import processing.core.PApplet;
+import processing.opengl.PGraphics3D;
+
+/**
+ * {@link PeasyCam#feed()} through {@link processing.core.PGraphics#camera()}
+ * versus writing the matrices directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedBenchmark {
+	@Param({ "false", "true" })
+	boolean directFeed;
+
+	private PGraphics3D g;
+	private PeasyCam cam;
+
+	@Setup
+	public void setup() {
+		g = new PGraphics3D();
+		cam = new PeasyCam(new PApplet(), g, 10, -20, 5, 300);
+		cam.rotateX(0.4);
+		cam.rotateY(-1.2);
+		cam.rotateZ(2.2);
+		cam.setDirectFeed(directFeed);
+	}
+
+	@Benchmark
+	public float feed() {
+		cam.feed();
+		return g.projmodelview.m23;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.RotationOrder;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+import processing.core.PApplet;
+import processing.opengl.PGraphics3D;
+
+/**
+ * A whole camera frame: mouse-driven impulses on every damped channel,
+ * followed by the camera's per-frame update and feed. The applet is never
+ * started, and the renderer has no GL surface; only its matrix math runs.
+ * Each operation is one frame of a virtual 60 fps clock, so that damping
+ * keeps up with the impulses as it would in a sketch.
+ *
+ * <p>
+ * Also a whole hover transition: a setState() on a camera at rest, then the
+ * sketch's frames until the camera is at rest again, with its waking and
+ * sleeping.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+	private PGraphics3D g;
+	private PeasyCam cam;
+	private VirtualClock clock;
+
+	private PeasyCam hoverCam;
+	private PeasyDrawDispatcher hoverFrames;
+	private final CameraState[] hoverStates = {
+			new CameraState(new Rotation(RotationOrder.XYZ, 0.4, -1.2, 2.2),
+					new Vector3D(10, -20, 5), 300),
+			new CameraState(new Rotation(RotationOrder.XYZ, -0.3, 0.5, 0.1),
+					new Vector3D(-40, 8, 120), 450) };
+	private int hovers = 0;
+
+	@Setup
+	public void setup() {
+		g = new PGraphics3D();
+		cam = new PeasyCam(new PApplet(), g, 0, 0, 0, 500);
+		// the unsized renderer would leave a 0x0 viewport, and NaN drags
+		cam.setViewport(0, 0, 800, 600);
+		clock = new VirtualClock(60);
+		cam.setClock(clock);
+
+		final PApplet hoverApplet = new PApplet();
+		hoverCam = new PeasyCam(hoverApplet, new PGraphics3D(), 0, 0, 0, 500);
+		hoverCam.setViewport(0, 0, 800, 600);
+		hoverCam.setClock(clock);
+		hoverFrames = PeasyDrawDispatcher.get(hoverApplet);
+	}
+
+	@Benchmark
+	public float dampedFrame() {
+		cam.getRotateDragHandler().handleDrag(3, -2);
+		cam.getPanDragHandler().handleDrag(1, 1);
+		cam.getZoomDragHandler().handleDrag(0, 0.5);
+		cam.update();
+		clock.step();
+		return g.projmodelview.m23;
+	}
+
+	@Benchmark
+	public long hoverTransition() {
+		hoverCam.setState(hoverStates[hovers++ & 1], 100);
+		do {
+			hoverFrames.draw();
+			clock.step();
+		} while (!hoverCam.isSleeping());
+		return hoverCam.getStateVersion();
+	}
+
+	@TearDown
+	public void check() {
+		final CameraState state = cam.getState();
+		final double[] values = { state.rotation.getQ0(), state.rotation.getQ1(),
+				state.rotation.getQ2(), state.rotation.getQ3(), state.center.getX(),
+				state.center.getY(), state.center.getZ(), state.distance };
+		for (final double v : values) {
+			if (Double.isNaN(v) || Double.isInfinite(v)) {
+				throw new IllegalStateException("The camera's state is not finite: "
+						+ state.rotation + " " + state.center + " " + state.distance);
+			}
+		}
+	}
+}
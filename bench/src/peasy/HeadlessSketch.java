@@ -0,0 +1,126 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.event.MouseEvent;
+
+/**
+ * A sketch that never opens a window, for the checks: it calls the hooks
+ * that cameras register exactly as Processing's animation thread would,
+ * through {@link PApplet#handleMethods(String)}, and times its frames by a
+ * {@link VirtualClock}.
+ */
+class HeadlessSketch extends PApplet {
+	final VirtualClock clock = new VirtualClock(60);
+	final PGraphics canvas;
+
+	// the button pressed, and the time of the last event, in milliseconds;
+	// the pointer is in mouseX and mouseY, as in a sketch
+	private int button;
+	private long millis = 0;
+
+	HeadlessSketch(final int width, final int height) {
+		canvas = new Canvas(width, height);
+	}
+
+	/**
+	 * A camera on the sketch's canvas, seeing the given viewport, and timed by
+	 * the sketch's clock.
+	 */
+	PeasyCam camera(final int x, final int y, final int w, final int h) {
+		final PeasyCam cam = new PeasyCam(this, canvas, 500);
+		cam.setViewport(x, y, w, h);
+		cam.getModel().setClock(clock);
+		return cam;
+	}
+
+	/**
+	 * Advance the clock by a frame, and run the sketch's draw hooks.
+	 */
+	void frame() {
+		clock.step();
+		millis = clock.nanoTime() / 1000000;
+		handleMethods("draw");
+	}
+
+	/**
+	 * Run the sketch's dispose hooks, as Processing does when it exits.
+	 */
+	void disposeHooks() {
+		handleMethods("dispose");
+	}
+
+	void press(final int x, final int y) {
+		press(x, y, PConstants.LEFT);
+	}
+
+	void press(final int x, final int y, final int button) {
+		mouseX = x;
+		mouseY = y;
+		this.button = button;
+		send(MouseEvent.PRESS, 1);
+	}
+
+	void drag(final int x, final int y) {
+		drag(x, y, millis);
+	}
+
+	/**
+	 * Drag to the given point, with the event stamped at the given time.
+	 */
+	void drag(final int x, final int y, final long millis) {
+		mouseX = x;
+		mouseY = y;
+		this.millis = millis;
+		send(MouseEvent.DRAG, 1);
+	}
+
+	void release() {
+		send(MouseEvent.RELEASE, 1);
+	}
+
+	void wheel(final int x, final int y, final int count) {
+		mouseX = x;
+		mouseY = y;
+		send(MouseEvent.WHEEL, count);
+	}
+
+	private void send(final int action, final int count) {
+		handleMethods("mouseEvent", new Object[] { new MouseEvent(null, millis, action,
+				0, mouseX, mouseY, button, count) });
+	}
+
+	/**
+	 * A canvas that accepts the camera and draws nothing.
+	 */
+	private static class Canvas extends PGraphics {
+		Canvas(final int width, final int height) {
+			setSize(width, height);
+		}
+
+		@Override
+		public void camera(final float eyeX, final float eyeY, final float eyeZ,
+				final float centerX, final float centerY, final float centerZ,
+				final float upX, final float upY, final float upZ) {
+		}
+	}
+}
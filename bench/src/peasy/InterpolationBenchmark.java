@@ -0,0 +1,89 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.RotationOrder;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * The per-frame work of a running setState() animation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpolationBenchmark {
+	private double t = 0.37;
+	private final Rotation a = new Rotation(RotationOrder.XYZ, 0.4, -1.2, 2.2);
+	private final Rotation b = new Rotation(RotationOrder.XYZ, -0.3, 0.5, 0.1);
+	private final Vector3D from = new Vector3D(10, -20, 5);
+	private final Vector3D to = new Vector3D(-40, 8, 120);
+
+	private final MutableRotation ma = new MutableRotation(a);
+	private final MutableRotation mb = new MutableRotation(b);
+	private final MutableRotation rotationOut = new MutableRotation();
+	private final MutableVector3D mfrom = new MutableVector3D(from);
+	private final MutableVector3D mto = new MutableVector3D(to);
+	private final MutableVector3D vectorOut = new MutableVector3D();
+
+	@Benchmark
+	public Rotation slerp() {
+		return InterpolationUtil.slerp(a, b, t);
+	}
+
+	@Benchmark
+	public MutableRotation slerpMutable() {
+		return InterpolationUtil.slerp(ma, mb, t, rotationOut);
+	}
+
+	@Benchmark
+	public MutableRotation fastSlerpMutable() {
+		return InterpolationUtil.fastSlerp(ma, mb, t, rotationOut);
+	}
+
+	@Benchmark
+	public double smoothScalar() {
+		return InterpolationUtil.smooth(300, 1200, t);
+	}
+
+	@Benchmark
+	public Vector3D smoothVector() {
+		return InterpolationUtil.smooth(from, to, t);
+	}
+
+	@Benchmark
+	public MutableVector3D smoothVectorMutable() {
+		return InterpolationUtil.smooth(mfrom, mto, t, vectorOut);
+	}
+}
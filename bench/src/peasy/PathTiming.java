@@ -0,0 +1,94 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Checks that a {@link CameraPath} gives a key that only turns the camera its
+ * share of the time. Each path pans by a quarter circle's arc at the look-at
+ * distance, then turns the camera a quarter turn without moving the eye, so
+ * the middle key should come at about half time. Run with
+ * <code>ant check</code>; exits with an error if a check fails.
+ */
+public class PathTiming {
+	private static final double DISTANCE = 500;
+	private static final double PAN = Math.PI / 2 * DISTANCE;
+	private static final int STEPS = 20000;
+
+	public static void main(final String[] args) {
+		final CameraState start = new CameraState(new Rotation(), Vector3D.zero,
+				DISTANCE);
+		final CameraState panned = new CameraState(new Rotation(), new Vector3D(PAN,
+				0, 0), DISTANCE);
+
+		// a roll about the line of sight
+		final CameraState rolled = new CameraState(new Rotation(Vector3D.plusK,
+				Math.PI / 2), panned.center, DISTANCE);
+
+		// a yaw about the eye: the look-at point swings round it
+		final Rotation yaw = new Rotation(Vector3D.plusJ, Math.PI / 2);
+		final Vector3D eye = panned.center.add(new Vector3D(0, 0, DISTANCE));
+		final CameraState yawed = new CameraState(yaw, eye.subtract(yaw.applyTo(
+				Vector3D.plusK).scalarMultiply(DISTANCE)), DISTANCE);
+
+		final boolean rollOk = check("roll", start, panned, rolled);
+		final boolean yawOk = check("yaw about the eye", start, panned, yawed);
+		if (!rollOk || !yawOk) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Find when the path passes its middle key, and check that it's near half
+	 * time.
+	 */
+	private static boolean check(final String name, final CameraState a,
+			final CameraState b, final CameraState c) {
+		final CameraPath path = new CameraPath(a, b, c);
+		final MutableRotation r = new MutableRotation();
+		final MutableVector3D center = new MutableVector3D();
+		final MutableRotation key = new MutableRotation(b.rotation);
+		double best = Double.MAX_VALUE, when = 0;
+		for (int k = 0; k <= STEPS; k++) {
+			final double t = (double)k / STEPS;
+			path.evaluate(t, r, center);
+			final double dx = center.getX() - b.center.getX();
+			final double dy = center.getY() - b.center.getY();
+			final double dz = center.getZ() - b.center.getZ();
+			final double error = Math.sqrt(dx * dx + dy * dy + dz * dz) + angle(r, key)
+					* DISTANCE;
+			if (error < best) {
+				best = error;
+				when = t;
+			}
+		}
+		final boolean ok = Math.abs(when - 0.5) < 0.05;
+		System.out.println(String.format("%-20s middle key at t = %.3f  %s", name, when,
+				ok ? "ok" : "FAILED, expected about 0.5"));
+		return ok;
+	}
+
+	private static double angle(final MutableRotation a, final MutableRotation b) {
+		final double dot = Math.abs(a.getQ0() * b.getQ0() + a.getQ1() * b.getQ1()
+				+ a.getQ2() * b.getQ2() + a.getQ3() * b.getQ3());
+		return 2 * Math.acos(Math.min(dot, 1));
+	}
+}
@@ -0,0 +1,86 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.Random;
+
+/**
+ * Checks that the pointer velocity is measured from the events' own
+ * timestamps and positions: steady drags from a fast and a slow mouse,
+ * sent through {@link processing.core.PApplet#handleMethods(String, Object[])}
+ * one event per frame, several per frame, and all before one frame, must
+ * each give the drag's true speed, and that speed must fall to zero on
+ * release. Run with <code>ant check</code>; exits with an error if a check
+ * fails.
+ */
+public class PointerTracking {
+	public static void main(final String[] args) {
+		boolean ok = true;
+		// a 250 Hz mouse moving 3 pixels right and 1 up per event
+		ok &= check("250 Hz, one per frame", 4, 3, -1, 1);
+		ok &= check("250 Hz, several per frame", 4, 3, -1, 8);
+		ok &= check("250 Hz, all in one frame", 4, 3, -1, 0);
+		// a 30 Hz one moving 10 pixels left
+		ok &= check("30 Hz, one per frame", 33, -10, 0, 1);
+		ok &= check("30 Hz, all in one frame", 33, -10, 0, 0);
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @param perFrame
+	 *            at most how many events to send between frames, or 0 for
+	 *            all of them before a single frame
+	 */
+	private static boolean check(final String name, final int millis, final int dx,
+			final int dy, final int perFrame) {
+		final HeadlessSketch sketch = new HeadlessSketch(800, 800);
+		final PeasyCam cam = sketch.camera(0, 0, 800, 800);
+		sketch.frame();
+
+		final Random random = new Random(1);
+		int x = 400, y = 400;
+		long time = 1000;
+		sketch.press(x, y);
+		for (int event = 0, sent = 0; event < 60; event++) {
+			x += dx;
+			y += dy;
+			time += millis;
+			sketch.drag(x, y, time);
+			if (perFrame > 0 && ++sent >= 1 + random.nextInt(perFrame)) {
+				sketch.frame();
+				sent = 0;
+			}
+		}
+		sketch.frame();
+		final double[] velocity = cam.getPointerVelocity();
+		sketch.release();
+		final double[] released = cam.getPointerVelocity();
+
+		final double vx = dx * 1000.0 / millis, vy = dy * 1000.0 / millis;
+		final boolean passed = Math.abs(velocity[0] - vx) < 1e-9
+				&& Math.abs(velocity[1] - vy) < 1e-9 && released[0] == 0
+				&& released[1] == 0;
+		System.out.println(String.format(
+				"%-26s (%.1f, %.1f) px/s, expected (%.1f, %.1f)  %s", name,
+				velocity[0], velocity[1], vx, vy, passed ? "ok" : "FAILED"));
+		return passed;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import peasy.org.apache.commons.math.geometry.CardanEulerSingularityException;
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.RotationOrder;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * The rotation math behind every camera update, in its immutable and mutable
+ * forms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotationBenchmark {
+	private double pitch = 0.4, yaw = -1.2, roll = 2.2;
+	private final Rotation rotation = new Rotation(RotationOrder.XYZ, pitch, yaw, roll);
+	// gimbal lock for XYZ, so getAngles has to fall back to another order
+	private final Rotation singular = new Rotation(RotationOrder.XYZ, 0.3,
+			Math.PI / 2, 0.1);
+	private final Rotation step = new Rotation(Vector3D.plusJ, 0.01);
+	private final Vector3D look = Vector3D.plusK;
+
+	private final MutableRotation mutableRotation = new MutableRotation(rotation);
+	private final MutableRotation mutableSingular = new MutableRotation(singular);
+	private final MutableVector3D out = new MutableVector3D();
+	private final double[] angles = new double[3];
+
+	@Benchmark
+	public Vector3D applyToVector() {
+		return rotation.applyTo(look);
+	}
+
+	@Benchmark
+	public MutableVector3D applyToVectorMutable() {
+		return mutableRotation.applyTo(0, 0, 1, out);
+	}
+
+	@Benchmark
+	public Rotation applyToRotation() {
+		return rotation.applyTo(step);
+	}
+
+	@Benchmark
+	public MutableRotation applyToAxisAngleMutable() {
+		return mutableRotation.applyToAxisAngle(0, 1, 0, 0.01);
+	}
+
+	@Benchmark
+	public Rotation fromCardanAngles() {
+		return new Rotation(RotationOrder.XYZ, pitch, yaw, roll);
+	}
+
+	@Benchmark
+	public double[] getAngles() throws CardanEulerSingularityException {
+		return rotation.getAngles(RotationOrder.XYZ);
+	}
+
+	@Benchmark
+	public double[] getAnglesMutable() {
+		mutableRotation.getAngles(RotationOrder.XYZ, angles);
+		return angles;
+	}
+
+	/**
+	 * What getRotations() used to pay near gimbal lock.
+	 */
+	@Benchmark
+	public double[] getAnglesSingular() {
+		try {
+			return singular.getAngles(RotationOrder.XYZ);
+		} catch (final CardanEulerSingularityException e) {
+		}
+		try {
+			return singular.getAngles(RotationOrder.YXZ);
+		} catch (final CardanEulerSingularityException e) {
+		}
+		return null;
+	}
+
+	@Benchmark
+	public double[] getAnglesSingularMutable() {
+		if (!mutableSingular.getAngles(RotationOrder.XYZ, angles)) {
+			mutableSingular.getAngles(RotationOrder.YXZ, angles);
+		}
+		return angles;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.Random;
+
+/**
+ * How far {@link InterpolationUtil#fastSlerp(MutableRotation, MutableRotation, double, MutableRotation)}
+ * strays from slerp, by the angle between the two rotations at the same t,
+ * over random pairs of rotations grouped by the angle between them. Run with
+ * <code>ant accuracy</code>; see InterpolationBenchmark for the speed of each.
+ */
+public class SlerpAccuracy {
+	private static final int PAIRS = 100000;
+	private static final int STEPS = 64;
+
+	public static void main(final String[] args) {
+		final Random random = new Random(0);
+		final double[] max = new double[6];
+		final double[] sum = new double[6];
+		final int[] count = new int[6];
+		final MutableRotation a = new MutableRotation();
+		final MutableRotation b = new MutableRotation();
+		final MutableRotation exact = new MutableRotation();
+		final MutableRotation fast = new MutableRotation();
+		for (int i = 0; i < PAIRS; i++) {
+			a.setNormalized(random.nextGaussian(), random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian());
+			b.setNormalized(random.nextGaussian(), random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian());
+			final int bucket = Math.min((int)(angle(a, b) / Math.PI * 6), 5);
+			for (int k = 0; k <= STEPS; k++) {
+				final double t = (double)k / STEPS;
+				InterpolationUtil.slerp(a, b, t, exact);
+				InterpolationUtil.fastSlerp(a, b, t, fast);
+				final double error = angle(exact, fast);
+				max[bucket] = Math.max(max[bucket], error);
+				sum[bucket] += error;
+				count[bucket]++;
+			}
+		}
+		System.out.println("angle between      max error    mean error  (radians)");
+		for (int bucket = 0; bucket < 6; bucket++) {
+			System.out.println(String.format("%3d to %3d deg   %12.3e  %12.3e",
+					bucket * 30, bucket * 30 + 30, max[bucket], count[bucket] == 0 ? 0
+							: sum[bucket] / count[bucket]));
+		}
+	}
+
+	/**
+	 * The angle of the rotation taking a to b.
+	 */
+	private static double angle(final MutableRotation a, final MutableRotation b) {
+		final double dot = Math.abs(a.getQ0() * b.getQ0() + a.getQ1() * b.getQ1()
+				+ a.getQ2() * b.getQ2() + a.getQ3() * b.getQ3());
+		return 2 * Math.acos(Math.min(dot, 1));
+	}
+}
@@ -0,0 +1,82 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * Checks that slow drags, each of whose pushes is below the speed at which a
+ * damped action stops, still turn the camera: a one-pixel drag per frame for
+ * a second, at 60 and 20 fps, about each axis and across the viewport. Run with
+ * <code>ant check</code>; exits with an error if a check fails.
+ */
+public class SlowDrag {
+	private static final int FRAMES = 60;
+	private static final int YAW = 0, PITCH = 1, ROLL = 2;
+
+	public static void main(final String[] args) {
+		boolean ok = true;
+		for (final int framesPerUpdate : new int[] { 1, 3 }) {
+			ok &= check("yaw across the center", YAW, framesPerUpdate, 1, 0, 0, 0);
+			ok &= check("yaw halfway up", YAW, framesPerUpdate, 1, 0, 0, 0.5);
+			ok &= check("yaw near the top edge", YAW, framesPerUpdate, 1, 0, 0, 0.8);
+			ok &= check("pitch near the side edge", PITCH, framesPerUpdate, 0, 1, 0.8, 0);
+			ok &= check("roll near the center", ROLL, framesPerUpdate, 1, 0, 0, 0.1);
+		}
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Drag with the camera held to one axis, so that what it turns is that
+	 * axis's push alone.
+	 */
+	private static boolean check(final String name, final int axis,
+			final int framesPerUpdate, final double dx, final double dy,
+			final double ndcX, final double ndcY) {
+		final VirtualClock clock = new VirtualClock(60.0 / framesPerUpdate);
+		final CameraModel model = new CameraModel(500);
+		model.setClock(clock);
+		if (axis == YAW) {
+			model.setYawRotationMode();
+		} else if (axis == PITCH) {
+			model.setPitchRotationMode();
+		} else {
+			model.setRollRotationMode();
+		}
+		model.update();
+		for (int frame = 0; frame < FRAMES; frame += framesPerUpdate) {
+			clock.step();
+			for (int k = 0; k < framesPerUpdate; k++) {
+				model.constrainDrag(false, dx, dy);
+				model.dragRotate(dx, dy, ndcX, ndcY);
+			}
+			model.update();
+		}
+		while (model.isMoving()) {
+			clock.step();
+			model.update();
+		}
+		final double angle = 2 * Math.acos(Math.min(1, Math.abs(model.rotation()
+				.getQ0())));
+		final boolean ok = angle > 1e-3;
+		System.out.println(String.format("%2d fps  %-26s turned %.4f rad  %s",
+				60 / framesPerUpdate, name, angle, ok ? "ok" : "FAILED"));
+		return ok;
+	}
+}
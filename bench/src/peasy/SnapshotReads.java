@@ -0,0 +1,130 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import processing.core.PConstants;
+
+/**
+ * Checks that other threads always read a whole camera state from
+ * {@link PeasyCam#getSnapshot()}: while a headless sketch rotates, zooms,
+ * pans and moves its camera through
+ * {@link processing.core.PApplet#handleMethods(String, Object[])} as fast as
+ * it can, reader threads check that every position they read is the one
+ * that the rotation, center and distance read with it give, and that the
+ * version never goes back. Run with <code>ant check</code>; exits with an
+ * error if a check fails.
+ */
+public class SnapshotReads {
+	private static final int FRAMES = 20000;
+	private static final int READERS = 3;
+
+	private static volatile boolean running = true;
+	private static final AtomicLong reads = new AtomicLong();
+	private static final AtomicLong torn = new AtomicLong();
+	private static final AtomicLong backwards = new AtomicLong();
+
+	public static void main(final String[] args) throws InterruptedException {
+		final HeadlessSketch sketch = new HeadlessSketch(800, 600);
+		final PeasyCam cam = sketch.camera(0, 0, 800, 600);
+		final CameraSnapshot snapshot = cam.getSnapshot();
+		sketch.frame();
+
+		final Thread[] readers = new Thread[READERS];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread(new Runnable() {
+				public void run() {
+					read(snapshot);
+				}
+			});
+			readers[i].start();
+		}
+
+		final Random random = new Random(1);
+		int x = 400, y = 300;
+		for (int frame = 0; frame < FRAMES; frame++) {
+			if (frame % 200 == 0) {
+				sketch.release();
+				cam.lookAt(random.nextGaussian() * 100, random.nextGaussian() * 100,
+						random.nextGaussian() * 100, 300);
+				sketch.press(x, y, random.nextBoolean() ? PConstants.LEFT
+						: PConstants.RIGHT);
+			}
+			if (frame % 50 == 25) {
+				sketch.wheel(x, y, random.nextInt(5) - 2);
+				cam.pan(random.nextGaussian() * 10, random.nextGaussian() * 10);
+			}
+			x = Math.min(Math.max(x + random.nextInt(21) - 10, 0), 799);
+			y = Math.min(Math.max(y + random.nextInt(21) - 10, 0), 599);
+			sketch.drag(x, y);
+			sketch.frame();
+		}
+		running = false;
+		for (final Thread reader : readers) {
+			reader.join();
+		}
+
+		// the state last published is the camera's own, bit for bit
+		final MutableRotation r = new MutableRotation();
+		final MutableVector3D c = new MutableVector3D();
+		final double d = snapshot.read(r, c, null);
+		final CameraModel model = cam.getModel();
+		final MutableRotation mr = model.rotation();
+		final MutableVector3D mc = model.center();
+		final boolean current = d == model.getDistance() && c.getX() == mc.getX()
+				&& c.getY() == mc.getY() && c.getZ() == mc.getZ()
+				&& r.getQ0() == mr.getQ0() && r.getQ1() == mr.getQ1()
+				&& r.getQ2() == mr.getQ2() && r.getQ3() == mr.getQ3();
+		final boolean ok = torn.get() == 0 && backwards.get() == 0 && reads.get() > 0
+				&& current;
+		System.out.println(String.format(
+				"%d frames, %d reads, %d torn, %d went back, final state %s  %s", FRAMES,
+				reads.get(), torn.get(), backwards.get(), current ? "current" : "stale",
+				ok ? "ok" : "FAILED"));
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	private static void read(final CameraSnapshot snapshot) {
+		final MutableRotation rotation = new MutableRotation();
+		final MutableVector3D center = new MutableVector3D();
+		final MutableVector3D position = new MutableVector3D();
+		final MutableVector3D derived = new MutableVector3D();
+		long last = 0;
+		while (running) {
+			final long version = snapshot.getVersion();
+			if (version < last) {
+				backwards.incrementAndGet();
+			}
+			last = version;
+			final double distance = snapshot.read(rotation, center, position);
+			rotation.applyTo(0, 0, 1, derived).scalarMultiply(distance).add(center);
+			final double error = Math.abs(derived.getX() - position.getX())
+					+ Math.abs(derived.getY() - position.getY())
+					+ Math.abs(derived.getZ() - position.getZ());
+			if (error > 1e-9 * Math.max(1, distance)) {
+				torn.incrementAndGet();
+			}
+			reads.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.io.File;
+import java.io.IOException;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Checks that a {@link CameraTrackPlayer} started and updated in the same
+ * frame, on a {@link VirtualClock}, keeps playing, forwards from the start
+ * and backwards from the end, and stops only at the end it heads for. Run
+ * with <code>ant check</code>; exits with an error if a check fails.
+ */
+public class TrackPlayback {
+	private static final long FRAME_NANOS = 1000000000L / 60;
+	private static final int RECORDS = 120;
+
+	public static void main(final String[] args) throws IOException {
+		final File file = File.createTempFile("peasycam", ".track");
+		file.deleteOnExit();
+		final CameraRecorder recorder = new CameraRecorder(file);
+		for (int i = 0; i < RECORDS; i++) {
+			recorder.record(i * FRAME_NANOS, new CameraState(new Rotation(), new Vector3D(
+					i, 0, 0), 500));
+		}
+		recorder.close();
+
+		final boolean forward = check(file, 1);
+		final boolean backward = check(file, -1);
+		file.delete();
+		if (!forward || !backward) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean check(final File file, final double rate)
+			throws IOException {
+		final VirtualClock clock = new VirtualClock(60);
+		final CameraModel model = new CameraModel(500);
+		model.setClock(clock);
+		final CameraTrackPlayer player = new CameraTrackPlayer(file, model);
+		final long duration = player.getDuration();
+		player.setRate(rate);
+		player.play();
+		player.update();
+		final boolean startedOk = player.isPlaying()
+				&& player.getTime() == (rate > 0 ? 0 : duration);
+		clock.step();
+		player.update();
+		final long moved = player.getTime();
+		final boolean movedOk = player.isPlaying()
+				&& (rate > 0 ? moved > 0 : moved < duration);
+
+		int frames = 1;
+		while (player.isPlaying() && frames < 10 * RECORDS) {
+			clock.step();
+			player.update();
+			frames++;
+		}
+		final boolean stoppedOk = !player.isPlaying()
+				&& player.getTime() == (rate > 0 ? duration : 0);
+		player.close();
+
+		final boolean ok = startedOk && movedOk && stoppedOk;
+		System.out.println(String.format(
+				"rate %4.1f  after one tick at %d ms, stopped at %d ms after %d frames  %s",
+				rate, moved, player.getTime(), frames, ok ? "ok" : "FAILED"));
+		return ok;
+	}
+}
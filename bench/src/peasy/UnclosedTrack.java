@@ -0,0 +1,91 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Checks that a track whose recorder was never closed, as when a sketch
+ * crashes, still plays: once with the record count the writer keeps in the
+ * header, and once with that count wiped, as a crash before the first count
+ * was written would leave it. Run with <code>ant check</code>; exits with an
+ * error if a check fails.
+ */
+public class UnclosedTrack {
+	private static final long FRAME_NANOS = 1000000000L / 60;
+	private static final int RECORDS = 500;
+
+	public static void main(final String[] args) throws Exception {
+		final File file = File.createTempFile("peasycam", ".track");
+		file.deleteOnExit();
+		final CameraRecorder recorder = new CameraRecorder(file);
+		for (int i = 0; i < RECORDS; i++) {
+			recorder.record(i * FRAME_NANOS, new CameraState(new Rotation(Vector3D.plusJ,
+					i * 0.01), new Vector3D(i, 0, 0), 500));
+		}
+		// give the writer time to catch up, but don't close
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (headerCount(file) < RECORDS && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		boolean ok = check("count from the header", file);
+		final RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		try {
+			raw.seek(CameraRecorder.COUNT_OFFSET);
+			raw.writeLong(0);
+		} finally {
+			raw.close();
+		}
+		ok &= check("count recovered", file);
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	private static long headerCount(final File file) throws IOException {
+		final RandomAccessFile raw = new RandomAccessFile(file, "r");
+		try {
+			raw.seek(CameraRecorder.COUNT_OFFSET);
+			return raw.readLong();
+		} finally {
+			raw.close();
+		}
+	}
+
+	private static boolean check(final String name, final File file)
+			throws IOException {
+		final CameraModel model = new CameraModel(500);
+		final CameraTrackPlayer player = new CameraTrackPlayer(file, model);
+		final long records = player.getRecordCount();
+		// the duration is rounded down to whole milliseconds
+		player.seek(player.getDuration());
+		final double x = model.center().getX();
+		player.close();
+		final boolean ok = records == RECORDS && Math.abs(x - (RECORDS - 1)) < 1;
+		System.out.println(String.format("%-22s %d records, ends at x = %.1f  %s",
+				name, records, x, ok ? "ok" : "FAILED"));
+		return ok;
+	}
+}
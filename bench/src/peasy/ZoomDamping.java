@@ -0,0 +1,79 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * Checks that a damped zoom ends at the same distance at any frame rate: the
+ * same wheel impulse is followed at 60, 30 and 20 fps on a
+ * {@link VirtualClock}, and the distances compared whenever the cameras have
+ * seen the same time. Run with <code>ant check</code>; exits with an error
+ * if a check fails.
+ */
+public class ZoomDamping {
+	// reference frames, at 1/60 second each
+	private static final int FRAMES = 120;
+
+	public static void main(final String[] args) {
+		final double[] at60 = follow(1);
+		boolean ok = true;
+		ok &= check(at60, 2);
+		ok &= check(at60, 3);
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return the distance after each reference frame that an update ended
+	 *         on, and 0 for the rest
+	 */
+	private static double[] follow(final int framesPerUpdate) {
+		final VirtualClock clock = new VirtualClock(60.0 / framesPerUpdate);
+		final CameraModel model = new CameraModel(500);
+		model.setClock(clock);
+		model.update();
+		model.wheelZoom(3);
+		// the first update after waking counts as one frame
+		model.update();
+		final double[] distances = new double[FRAMES + 1];
+		distances[1] = model.getDistance();
+		for (int frame = 1 + framesPerUpdate; frame <= FRAMES; frame += framesPerUpdate) {
+			clock.step();
+			model.update();
+			distances[frame] = model.getDistance();
+		}
+		return distances;
+	}
+
+	private static boolean check(final double[] at60, final int framesPerUpdate) {
+		final double[] other = follow(framesPerUpdate);
+		final int last = FRAMES - (FRAMES - 1) % framesPerUpdate;
+		double worst = 0;
+		for (int frame = 1; frame <= FRAMES; frame++) {
+			if (other[frame] != 0) {
+				worst = Math.max(worst, Math.abs(other[frame] - at60[frame]) / at60[frame]);
+			}
+		}
+		final boolean ok = worst < 1e-8;
+		System.out.println(String.format(
+				"%2d fps  final distance %.6f (%.6f at 60 fps), largest difference %.3g  %s",
+				60 / framesPerUpdate, other[last], at60[last], worst, ok ? "ok" : "FAILED"));
+		return ok;
+	}
+}
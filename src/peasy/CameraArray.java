@@ -0,0 +1,417 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Many cameras, stored as flat arrays rather than as objects, and advanced
+ * together by {@link #step(double)}. Each camera has the same state as a
+ * {@link CameraModel} (rotation, look-at point and distance), damped rotate,
+ * zoom and pan velocities with the same friction as a {@link DampedAction},
+ * and one transition to a target state, eased as
+ * {@link CameraModel#setState(CameraState, long)} eases it.
+ *
+ * <p>
+ * Cameras are addressed by index, from 0 to {@link #size()} - 1. A
+ * CameraArray is not thread-safe; only step() itself uses other threads, and
+ * only when {@link #setParallel(boolean)} is on.
+ */
+public class CameraArray {
+	// velocity channels, in the order CameraModel updates its damped actions
+	private static final int ROTATE_X = 0, ROTATE_Y = 1, ROTATE_Z = 2, ZOOM = 3,
+			PAN_X = 4, PAN_Y = 5, CHANNELS = 6;
+
+	// below this many cameras per task, step() doesn't split any further
+	private static final int SPLIT_THRESHOLD = 1024;
+
+	private final int size;
+
+	private final double[] rotation; // q0, q1, q2, q3 per camera
+	private final double[] center; // x, y, z per camera
+	private final double[] distance;
+	private final double[] velocity; // CHANNELS per camera
+
+	// transitions; a camera is animating while its duration is nonzero
+	private final double[] startRotation;
+	private final double[] endRotation;
+	private final double[] startCenter;
+	private final double[] endCenter;
+	private final double[] startDistance;
+	private final double[] endDistance;
+	private final double[] elapsed;
+	private final double[] duration;
+
+	private final double damping;
+	private double minimumDistance = 1;
+	private double maximumDistance = Double.MAX_VALUE;
+
+	private boolean parallel = false;
+	private RotationBlend rotationBlend = RotationBlend.SLERP;
+
+	public CameraArray(final int size, final double distance) {
+		this(size, distance, 0.16);
+	}
+
+	/**
+	 * @param friction
+	 *            as for {@link DampedAction#DampedAction(CameraModel, double)}
+	 */
+	public CameraArray(final int size, final double distance, final double friction) {
+		this.size = size;
+		this.rotation = new double[size * 4];
+		this.center = new double[size * 3];
+		this.distance = new double[size];
+		this.velocity = new double[size * CHANNELS];
+		this.startRotation = new double[size * 4];
+		this.endRotation = new double[size * 4];
+		this.startCenter = new double[size * 3];
+		this.endCenter = new double[size * 3];
+		this.startDistance = new double[size];
+		this.endDistance = new double[size];
+		this.elapsed = new double[size];
+		this.duration = new double[size];
+		this.damping = 1.0 - friction;
+
+		final double d = Math.max(distance, CameraModel.SMALLEST_MINIMUM_DISTANCE);
+		for (int i = 0; i < size; i++) {
+			rotation[i * 4] = 1;
+			this.distance[i] = d;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * When on, {@link #step(double)} divides the cameras among the threads of
+	 * the common fork/join pool. Worth it for thousands of cameras, not for a
+	 * handful. Off by default.
+	 */
+	public void setParallel(final boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Choose how transitions blend rotations. {@link RotationBlend#SLERP} by
+	 * default.
+	 */
+	public void setRotationBlend(final RotationBlend blend) {
+		this.rotationBlend = blend;
+	}
+
+	public RotationBlend getRotationBlend() {
+		return rotationBlend;
+	}
+
+	public void setMinimumDistance(final double minimumDistance) {
+		this.minimumDistance = Math.max(minimumDistance,
+				CameraModel.SMALLEST_MINIMUM_DISTANCE);
+	}
+
+	public void setMaximumDistance(final double maximumDistance) {
+		this.maximumDistance = maximumDistance;
+	}
+
+	public MutableRotation getRotation(final int i, final MutableRotation out) {
+		final int q = i * 4;
+		return out.set(rotation[q], rotation[q + 1], rotation[q + 2], rotation[q + 3]);
+	}
+
+	public MutableVector3D getLookAt(final int i, final MutableVector3D out) {
+		final int c = i * 3;
+		return out.set(center[c], center[c + 1], center[c + 2]);
+	}
+
+	public double getDistance(final int i) {
+		return distance[i];
+	}
+
+	/**
+	 * Where is camera i in world space?
+	 *
+	 * @return out
+	 */
+	public MutableVector3D getPosition(final int i, final MutableVector3D out) {
+		final int q = i * 4, c = i * 3;
+		final double q0 = rotation[q], q1 = rotation[q + 1], q2 = rotation[q + 2];
+		final double q3 = rotation[q + 3];
+		final double d = distance[i];
+		// the rotated +z axis, as MutableRotation.applyTo(0, 0, 1, out) gives it
+		return out.set(center[c] + d * 2 * (q1 * q3 - q0 * q2), center[c + 1] + d * 2
+				* (q0 * q1 + q2 * q3), center[c + 2] + d * (2 * (q0 * q0 + q3 * q3) - 1));
+	}
+
+	public CameraState getState(final int i) {
+		final int q = i * 4, c = i * 3;
+		return new CameraState(new Rotation(rotation[q], rotation[q + 1],
+				rotation[q + 2], rotation[q + 3], false), new Vector3D(center[c],
+				center[c + 1], center[c + 2]), distance[i]);
+	}
+
+	public void setState(final int i, final CameraState state) {
+		setState(i, state, 300);
+	}
+
+	public void setState(final int i, final CameraState state,
+			final long animationTimeMillis) {
+		final int q = i * 4, c = i * 3;
+		final Rotation r = state.rotation;
+		final Vector3D v = state.center;
+		final double d = Math.min(maximumDistance, Math.max(minimumDistance,
+				state.distance));
+		if (animationTimeMillis > 0) {
+			System.arraycopy(rotation, q, startRotation, q, 4);
+			System.arraycopy(center, c, startCenter, c, 3);
+			startDistance[i] = distance[i];
+			endRotation[q] = r.getQ0();
+			endRotation[q + 1] = r.getQ1();
+			endRotation[q + 2] = r.getQ2();
+			endRotation[q + 3] = r.getQ3();
+			endCenter[c] = v.getX();
+			endCenter[c + 1] = v.getY();
+			endCenter[c + 2] = v.getZ();
+			endDistance[i] = d;
+			elapsed[i] = 0;
+			duration[i] = animationTimeMillis / 1000.0;
+			final int k = i * CHANNELS;
+			velocity[k + ROTATE_X] = velocity[k + ROTATE_Y] = velocity[k + ROTATE_Z] = 0;
+		} else {
+			rotation[q] = r.getQ0();
+			rotation[q + 1] = r.getQ1();
+			rotation[q + 2] = r.getQ2();
+			rotation[q + 3] = r.getQ3();
+			center[c] = v.getX();
+			center[c + 1] = v.getY();
+			center[c + 2] = v.getZ();
+			distance[i] = d;
+			duration[i] = 0;
+		}
+	}
+
+	/**
+	 * Push camera i's rotation about its own x, y and z axes, in radians per
+	 * reference frame.
+	 */
+	public void rotateImpulse(final int i, final double x, final double y,
+			final double z) {
+		final int k = i * CHANNELS;
+		velocity[k + ROTATE_X] += x;
+		velocity[k + ROTATE_Y] += y;
+		velocity[k + ROTATE_Z] += z;
+	}
+
+	/**
+	 * As {@link CameraModel#wheelZoom(double)}.
+	 */
+	public void zoomImpulse(final int i, final double delta) {
+		velocity[i * CHANNELS + ZOOM] += delta;
+	}
+
+	/**
+	 * As {@link CameraModel#dragPan(double, double)}, without the division by
+	 * eight.
+	 */
+	public void panImpulse(final int i, final double dx, final double dy) {
+		final int k = i * CHANNELS;
+		velocity[k + PAN_X] += dx;
+		velocity[k + PAN_Y] += dy;
+	}
+
+	public void stop(final int i) {
+		final int k = i * CHANNELS;
+		for (int j = 0; j < CHANNELS; j++) {
+			velocity[k + j] = 0;
+		}
+		duration[i] = 0;
+	}
+
+	/**
+	 * @return true if camera i is drifting, or on its way to a new state
+	 */
+	public boolean isMoving(final int i) {
+		if (duration[i] != 0) {
+			return true;
+		}
+		final int k = i * CHANNELS;
+		for (int j = 0; j < CHANNELS; j++) {
+			if (velocity[k + j] != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Advance every camera by the given time.
+	 *
+	 * @param seconds
+	 *            time elapsed since the previous step
+	 */
+	public void step(final double seconds) {
+		final double frames = Math.min(CameraModel.MAX_FRAMES_PER_UPDATE, seconds
+				* 1e9 / DampedAction.REFERENCE_FRAME_NANOS);
+		final double decay = Math.pow(damping, frames);
+		final double travel = DampedAction.travel(damping, frames, decay);
+		if (parallel && size > SPLIT_THRESHOLD) {
+			ForkJoinPool.commonPool().invoke(
+					new StepTask(0, size, seconds, frames, decay, travel));
+		} else {
+			step(0, size, seconds, frames, decay, travel, new MutableRotation(),
+					new MutableVector3D());
+		}
+	}
+
+	private void step(final int from, final int to, final double seconds,
+			final double frames, final double decay, final double travel,
+			final MutableRotation r, final MutableVector3D v) {
+		for (int i = from; i < to; i++) {
+			final int q = i * 4, c = i * 3, k = i * CHANNELS;
+
+			// damped motion, as CameraModel's damped actions behave
+			double vx = velocity[k + ROTATE_X];
+			double vy = velocity[k + ROTATE_Y];
+			double vz = velocity[k + ROTATE_Z];
+			if (vx != 0 || vy != 0 || vz != 0) {
+				r.set(rotation[q], rotation[q + 1], rotation[q + 2], rotation[q + 3]);
+				if (vx != 0) {
+					r.applyToAxisAngle(1, 0, 0, moved(vx, frames, decay, travel));
+				}
+				if (vy != 0) {
+					r.applyToAxisAngle(0, 1, 0, moved(vy, frames, decay, travel));
+				}
+				if (vz != 0) {
+					r.applyToAxisAngle(0, 0, 1, moved(vz, frames, decay, travel));
+				}
+				rotation[q] = r.getQ0();
+				rotation[q + 1] = r.getQ1();
+				rotation[q + 2] = r.getQ2();
+				rotation[q + 3] = r.getQ3();
+				velocity[k + ROTATE_X] = decay(vx, decay);
+				velocity[k + ROTATE_Y] = decay(vy, decay);
+				velocity[k + ROTATE_Z] = decay(vz, decay);
+			}
+
+			final double vzoom = velocity[k + ZOOM];
+			if (vzoom != 0) {
+				// compounds, as CameraModel's zoom does
+				double d = distance[i]
+						* Math.exp(0.02 * moved(vzoom, frames, decay, travel));
+				velocity[k + ZOOM] = decay(vzoom, decay);
+				if (d < minimumDistance) {
+					d = minimumDistance;
+					velocity[k + ZOOM] = 0;
+				}
+				if (d > maximumDistance) {
+					d = maximumDistance;
+					velocity[k + ZOOM] = 0;
+				}
+				distance[i] = d;
+			}
+
+			final double px = velocity[k + PAN_X];
+			final double py = velocity[k + PAN_Y];
+			if (px != 0 || py != 0) {
+				final double panScale = distance[i] * 0.0025;
+				r.set(rotation[q], rotation[q + 1], rotation[q + 2], rotation[q + 3])
+						.applyTo(-moved(px, frames, decay, travel) * panScale,
+								-moved(py, frames, decay, travel) * panScale, 0, v);
+				center[c] += v.getX();
+				center[c + 1] += v.getY();
+				center[c + 2] += v.getZ();
+				velocity[k + PAN_X] = decay(px, decay);
+				velocity[k + PAN_Y] = decay(py, decay);
+			}
+
+			// transition, as CameraModel's interpolations run it
+			if (duration[i] != 0) {
+				elapsed[i] += seconds;
+				final double t = elapsed[i] / duration[i];
+				if (t <= .99) {
+					rotationBlend.blend(startRotation[q], startRotation[q + 1],
+							startRotation[q + 2], startRotation[q + 3], endRotation[q],
+							endRotation[q + 1], endRotation[q + 2], endRotation[q + 3],
+							t, r);
+					rotation[q] = r.getQ0();
+					rotation[q + 1] = r.getQ1();
+					rotation[q + 2] = r.getQ2();
+					rotation[q + 3] = r.getQ3();
+					for (int j = 0; j < 3; j++) {
+						center[c + j] = InterpolationUtil.smooth(startCenter[c + j],
+								endCenter[c + j], t);
+					}
+					distance[i] = InterpolationUtil.smooth(startDistance[i],
+							endDistance[i], t);
+				} else {
+					System.arraycopy(endRotation, q, rotation, q, 4);
+					System.arraycopy(endCenter, c, center, c, 3);
+					distance[i] = endDistance[i];
+					duration[i] = 0;
+				}
+			}
+		}
+	}
+
+	private double moved(final double velocity, final double frames,
+			final double decay, final double travel) {
+		return DampedAction.displacement(velocity, damping, frames, decay, travel);
+	}
+
+	private static double decay(final double velocity, final double decay) {
+		final double v = velocity * decay;
+		return Math.abs(v) < DampedAction.STOP ? 0 : v;
+	}
+
+	private class StepTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		private final double seconds, frames, decay, travel;
+
+		StepTask(final int from, final int to, final double seconds,
+				final double frames, final double decay, final double travel) {
+			this.from = from;
+			this.to = to;
+			this.seconds = seconds;
+			this.frames = frames;
+			this.decay = decay;
+			this.travel = travel;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SPLIT_THRESHOLD) {
+				step(from, to, seconds, frames, decay, travel, new MutableRotation(),
+						new MutableVector3D());
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new StepTask(from, mid, seconds, frames, decay, travel),
+					new StepTask(mid, to, seconds, frames, decay, travel));
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Drives a camera from any thread. Each method queues a command, without
+ * locking, and the camera applies everything queued at the start of its next
+ * update, on the animation thread, as one change.
+ *
+ * <p>
+ * The queue holds a limited number of commands; when it is full, new ones
+ * are refused, and their methods return false. The commands applied in one
+ * update leave the camera exactly as calling the same methods directly
+ * would; those whose effect a later one in the same update would undo are
+ * skipped. A setDistance() overrides earlier setDistance() calls. An
+ * instant setState() or reset() overrides earlier instant setState(),
+ * reset() and lookAt() calls; an instant lookAt() with a distance overrides
+ * earlier instant lookAt() calls, and one without a distance earlier
+ * instant lookAt() calls without a distance. An animated transition starts
+ * from wherever the commands before it left the camera, so none are skipped
+ * for it.
+ *
+ * @see CameraModel#getCommandQueue()
+ * @see PeasyCam#getCommandQueue()
+ */
+public class CameraCommandQueue {
+	private static final int RELATIVE = 0, STATE = 1, LOOK_AT = 2,
+			LOOK_AT_DISTANCE = 3, DISTANCE = 4;
+
+	private static abstract class Command {
+		final int kind;
+		final boolean instant;
+
+		Command(final int kind) {
+			this(kind, 0);
+		}
+
+		Command(final int kind, final long animationTimeMillis) {
+			this.kind = kind;
+			this.instant = animationTimeMillis <= 0;
+		}
+
+		abstract void apply(CameraModel model);
+	}
+
+	private final CameraModel model;
+	private final int capacity;
+	private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<Command>();
+	private final AtomicInteger size = new AtomicInteger();
+
+	// used only while draining, on the animation thread
+	private final ArrayList<Command> batch = new ArrayList<Command>();
+
+	CameraCommandQueue(final CameraModel model, final int capacity) {
+		this.model = model;
+		this.capacity = capacity;
+	}
+
+	public boolean setState(final CameraState state, final long animationTimeMillis) {
+		final Rotation r = state.rotation;
+		final Vector3D c = state.center;
+		final double q0 = r.getQ0(), q1 = r.getQ1(), q2 = r.getQ2(), q3 = r.getQ3();
+		final double x = c.getX(), y = c.getY(), z = c.getZ();
+		final double distance = state.distance;
+		return offer(new Command(STATE, animationTimeMillis) {
+			@Override
+			void apply(final CameraModel model) {
+				model.setState(q0, q1, q2, q3, x, y, z, distance, animationTimeMillis,
+						model.getRotationBlend());
+			}
+		});
+	}
+
+	public boolean reset(final long animationTimeMillis) {
+		return offer(new Command(STATE, animationTimeMillis) {
+			@Override
+			void apply(final CameraModel model) {
+				model.reset(animationTimeMillis);
+			}
+		});
+	}
+
+	public boolean lookAt(final double x, final double y, final double z,
+			final long animationTimeMillis) {
+		return offer(new Command(LOOK_AT, animationTimeMillis) {
+			@Override
+			void apply(final CameraModel model) {
+				model.lookAt(x, y, z, animationTimeMillis);
+			}
+		});
+	}
+
+	public boolean lookAt(final double x, final double y, final double z,
+			final double distance, final long animationTimeMillis) {
+		return offer(new Command(LOOK_AT_DISTANCE, animationTimeMillis) {
+			@Override
+			void apply(final CameraModel model) {
+				model.lookAt(x, y, z, distance, animationTimeMillis);
+			}
+		});
+	}
+
+	public boolean setDistance(final double distance, final long animationTimeMillis) {
+		return offer(new Command(DISTANCE, animationTimeMillis) {
+			@Override
+			void apply(final CameraModel model) {
+				model.setDistance(distance, animationTimeMillis);
+			}
+		});
+	}
+
+	public boolean pan(final double dx, final double dy) {
+		return offer(new Command(RELATIVE) {
+			@Override
+			void apply(final CameraModel model) {
+				model.pan(dx, dy);
+			}
+		});
+	}
+
+	public boolean rotateX(final double angle) {
+		return offer(new Command(RELATIVE) {
+			@Override
+			void apply(final CameraModel model) {
+				model.rotateX(angle);
+			}
+		});
+	}
+
+	public boolean rotateY(final double angle) {
+		return offer(new Command(RELATIVE) {
+			@Override
+			void apply(final CameraModel model) {
+				model.rotateY(angle);
+			}
+		});
+	}
+
+	public boolean rotateZ(final double angle) {
+		return offer(new Command(RELATIVE) {
+			@Override
+			void apply(final CameraModel model) {
+				model.rotateZ(angle);
+			}
+		});
+	}
+
+	/**
+	 * @return how many commands are waiting for the next update
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	private boolean offer(final Command command) {
+		// reserve a place first, so that the queue never grows past capacity
+		while (true) {
+			final int n = size.get();
+			if (n >= capacity) {
+				return false;
+			}
+			if (size.compareAndSet(n, n + 1)) {
+				break;
+			}
+		}
+		queue.offer(command);
+		return true;
+	}
+
+	/**
+	 * Apply the queued commands, skipping those overridden later in the batch.
+	 * Called by the model's update, on the animation thread.
+	 */
+	void drain() {
+		// only what was queued before now, however fast more arrives
+		for (int n = size.get(); n > 0; n--) {
+			final Command command = queue.poll();
+			if (command == null) {
+				break;
+			}
+			size.decrementAndGet();
+			batch.add(command);
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		// Walk backwards, dropping what a later command overrides. An instant
+		// setState() cancels running transitions and sets what it covers
+		// outright, so it hides earlier instant commands setting no more than
+		// that; a setDistance() restarts the distance transition from the
+		// current distance, which earlier ones haven't yet changed.
+		boolean state = false, centerAndDistance = false, center = false;
+		boolean distance = false;
+		for (int i = batch.size() - 1; i >= 0; i--) {
+			final Command command = batch.get(i);
+			switch (command.kind) {
+			case STATE:
+				if (command.instant) {
+					if (state) {
+						batch.set(i, null);
+					}
+					state = true;
+				}
+				break;
+			case LOOK_AT_DISTANCE:
+				if (command.instant) {
+					if (state || centerAndDistance) {
+						batch.set(i, null);
+					}
+					centerAndDistance = true;
+				}
+				break;
+			case LOOK_AT:
+				if (command.instant) {
+					if (state || centerAndDistance || center) {
+						batch.set(i, null);
+					}
+					center = true;
+				}
+				break;
+			case DISTANCE:
+				if (distance) {
+					batch.set(i, null);
+				}
+				distance = true;
+				break;
+			}
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			if (batch.get(i) != null) {
+				batch.get(i).apply(model);
+			}
+		}
+		batch.clear();
+	}
+}
@@ -0,0 +1,36 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * Lets whatever drives a {@link CameraModel} know when it needs attention.
+ */
+public interface CameraListener {
+	/**
+	 * The camera's rotation, center or distance was changed directly, outside
+	 * of {@link CameraModel#update()}; the view should be refreshed now.
+	 */
+	public void cameraChanged(final CameraModel model);
+
+	/**
+	 * The camera was at rest, and has started moving. It should be updated
+	 * every frame until {@link CameraModel#isMoving()} is false again.
+	 */
+	public void cameraStarted(final CameraModel model);
+}
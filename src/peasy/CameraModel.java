@@ -0,0 +1,782 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.ArrayList;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.RotationOrder;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Everything a {@link PeasyCam} knows about where it is and how it moves:
+ * rotation, look-at point and distance, the damped mouse-driven motion, the
+ * animated transitions between states, and the rotation constraints. It has no
+ * dependency on Processing, so it can be simulated on any thread, or without a
+ * sketch at all; call {@link #update()} once per frame while
+ * {@link #isMoving()}.
+ *
+ * @author Jonathan Feinberg
+ */
+public class CameraModel {
+	static final double SMALLEST_MINIMUM_DISTANCE = 0.01;
+
+	// a stalled frame is not allowed to fling the camera further than this
+	static final double MAX_FRAMES_PER_UPDATE = 15;
+
+	static enum Constraint {
+		YAW, PITCH, ROLL, SUPPRESS_ROLL
+	}
+
+	private final double startDistance;
+	private final Vector3D startCenter;
+
+	private double minimumDistance = 1;
+	private double maximumDistance = Double.MAX_VALUE;
+
+	private final ArrayList<DampedAction> dampedActions = new ArrayList<DampedAction>();
+	private final DampedAction rotateX, rotateY, rotateZ, dampedZoom, dampedPanX,
+			dampedPanY;
+
+	private double distance;
+	private final MutableVector3D center = new MutableVector3D();
+	private final MutableRotation rotation = new MutableRotation();
+
+	// bumped on every change to rotation, center or distance
+	private long stateVersion = 0;
+
+	// derived values, each valid while its version matches stateVersion
+	private final MutableVector3D eye = new MutableVector3D();
+	private final MutableVector3D up = new MutableVector3D();
+	private long eyeVersion = -1;
+	private final float[] rotations = new float[3];
+	private long rotationsVersion = -1;
+	private double rotateScale;
+	private long rotateScaleVersion = -1;
+
+	// scratch space, so that per-frame updates don't allocate
+	private final MutableVector3D panDelta = new MutableVector3D();
+	private final double[] angles = new double[3];
+
+	private Constraint dragConstraint = null;
+	private Constraint permaConstraint = null;
+
+	// drag and wheel impulses since the last update, summed per action, and
+	// applied once at the start of the next
+	private boolean impulsesPending = false;
+	private double pendingRotateX, pendingRotateY, pendingRotateZ;
+	private double pendingPanX, pendingPanY, pendingZoom;
+
+	private final InterpolationScheduler interps = new InterpolationScheduler(this);
+	private RotationBlend rotationBlend = RotationBlend.SLERP;
+	private Easing easing = null;
+
+	private final ArrayList<CameraListener> listeners = new ArrayList<CameraListener>();
+	private PeasyClock clock = PeasyClock.SYSTEM;
+	private CameraCommandQueue commands = null;
+
+	private boolean moving = false;
+	private long lastUpdateNanos;
+	private boolean firstUpdate;
+
+	// while updating, changes only mark the camera dirty
+	private boolean updating = false;
+	private boolean dirty = false;
+	private long coalescedChanges = 0;
+
+	public CameraModel(final double distance) {
+		this(0, 0, 0, distance);
+	}
+
+	public CameraModel(final double lookAtX, final double lookAtY,
+			final double lookAtZ, final double distance) {
+		this.startCenter = new Vector3D(lookAtX, lookAtY, lookAtZ);
+		this.center.set(startCenter);
+		this.startDistance = this.distance = Math.max(distance,
+				SMALLEST_MINIMUM_DISTANCE);
+
+		rotateX = new DampedAction(this) {
+			@Override
+			protected void behave(final double velocity) {
+				rotation.applyToAxisAngle(1, 0, 0, velocity);
+			}
+		};
+
+		rotateY = new DampedAction(this) {
+			@Override
+			protected void behave(final double velocity) {
+				rotation.applyToAxisAngle(0, 1, 0, velocity);
+			}
+		};
+
+		rotateZ = new DampedAction(this) {
+			@Override
+			protected void behave(final double velocity) {
+				rotation.applyToAxisAngle(0, 0, 1, velocity);
+			}
+		};
+
+		dampedZoom = new DampedAction(this) {
+			@Override
+			protected void behave(final double velocity) {
+				mouseZoom(velocity);
+			}
+		};
+
+		dampedPanX = new DampedAction(this) {
+			@Override
+			protected void behave(final double velocity) {
+				mousePan(velocity, 0);
+			}
+		};
+
+		dampedPanY = new DampedAction(this) {
+			@Override
+			protected void behave(final double velocity) {
+				mousePan(0, velocity);
+			}
+		};
+	}
+
+	/**
+	 * Have the given listener hear when the camera changes or starts moving,
+	 * along with any others; a {@link PeasyCam} has one of its own on its
+	 * model, which this leaves in place.
+	 */
+	public void addListener(final CameraListener listener) {
+		if (!listeners.contains(listener)) {
+			listeners.add(listener);
+		}
+	}
+
+	public void removeListener(final CameraListener listener) {
+		listeners.remove(listener);
+	}
+
+	void addDampedAction(final DampedAction action) {
+		dampedActions.add(action);
+	}
+
+	long now() {
+		return clock.nanoTime();
+	}
+
+	/**
+	 * Choose the clock which paces damping and transitions; see
+	 * {@link VirtualClock}. Change it while the camera is at rest, since
+	 * transitions in progress were timed by the old clock.
+	 */
+	public void setClock(final PeasyClock clock) {
+		this.clock = clock;
+		firstUpdate = true;
+	}
+
+	public PeasyClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * A queue through which other threads can drive this camera; its commands
+	 * are applied at the start of each update. Create it on the thread that
+	 * updates the camera, before handing it to others. While commands are
+	 * waiting, {@link #isMoving()} is true, so a loop that updates the camera
+	 * while it's moving picks them up; one that has stopped must check
+	 * isMoving() again, every frame, to notice them.
+	 */
+	public CameraCommandQueue getCommandQueue() {
+		if (commands == null) {
+			commands = new CameraCommandQueue(this, 1024);
+		}
+		return commands;
+	}
+
+	/**
+	 * @return whether commands are waiting in the queue; safe to call from
+	 *         the updating thread at any time, it's one volatile read
+	 */
+	boolean hasPendingCommands() {
+		return commands != null && commands.size() > 0;
+	}
+
+	/**
+	 * Advance all damped actions and running interpolations by the time
+	 * elapsed since the previous update.
+	 *
+	 * @return true if the camera changed
+	 */
+	public boolean update() {
+		if (!moving && hasPendingCommands()) {
+			wake();
+		}
+		final long now = now();
+		final double frames = firstUpdate ? 1 : Math.min(MAX_FRAMES_PER_UPDATE,
+				(now - lastUpdateNanos) / DampedAction.REFERENCE_FRAME_NANOS);
+		lastUpdateNanos = now;
+		firstUpdate = false;
+
+		if (impulsesPending) {
+			applyPendingImpulses();
+		}
+		updating = true;
+		if (commands != null) {
+			commands.drain();
+		}
+		for (int i = 0; i < dampedActions.size(); i++) {
+			dampedActions.get(i).update(frames);
+		}
+		interps.update(now);
+		updating = false;
+
+		if (isAtRest()) {
+			moving = false;
+		}
+		final boolean changed = dirty;
+		dirty = false;
+		return changed;
+	}
+
+	private boolean isAtRest() {
+		for (int i = 0; i < dampedActions.size(); i++) {
+			if (dampedActions.get(i).isMoving()) {
+				return false;
+			}
+		}
+		return !interps.isRunning();
+	}
+
+	/**
+	 * @return false once nothing is left to animate, and no commands are
+	 *         queued, until the next impulse, transition or command
+	 */
+	public boolean isMoving() {
+		return moving || hasPendingCommands();
+	}
+
+	/**
+	 * Called whenever something starts the camera moving.
+	 */
+	void wake() {
+		if (!moving) {
+			moving = true;
+			firstUpdate = true;
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).cameraStarted(this);
+			}
+		}
+	}
+
+	/**
+	 * Called whenever the rotation, center or distance changes. Outside of
+	 * {@link #update()} the listeners hear about it right away; during an
+	 * update, changes are collected and reported once, by update's result.
+	 */
+	void cameraChanged() {
+		stateVersion++;
+		if (!updating) {
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).cameraChanged(this);
+			}
+			return;
+		}
+		if (dirty) {
+			coalescedChanges++;
+		}
+		dirty = true;
+	}
+
+	/**
+	 * How many changes made during updates were folded into another change in
+	 * the same update, since this camera was created.
+	 */
+	public long getCoalescedChangeCount() {
+		return coalescedChanges;
+	}
+
+	/**
+	 * A number which increases whenever the camera's rotation, center or
+	 * distance changes, so that callers can cache what they derive from them.
+	 */
+	public long getStateVersion() {
+		return stateVersion;
+	}
+
+	private void updateEye() {
+		if (eyeVersion != stateVersion) {
+			rotation.applyTo(0, 0, 1, eye).scalarMultiply(distance).add(center);
+			rotation.applyTo(0, 1, 0, up);
+			eyeVersion = stateVersion;
+		}
+	}
+
+	// Read-only views of the current state, for feeding a renderer.
+
+	MutableVector3D eye() {
+		updateEye();
+		return eye;
+	}
+
+	MutableVector3D up() {
+		updateEye();
+		return up;
+	}
+
+	MutableVector3D center() {
+		return center;
+	}
+
+	MutableRotation rotation() {
+		return rotation;
+	}
+
+	/**
+	 * Set the distance as it is, without clamping or notification.
+	 */
+	void distance(final double distance) {
+		this.distance = distance;
+	}
+
+	void stopRotating() {
+		pendingRotateX = pendingRotateY = pendingRotateZ = 0;
+		rotateX.stop();
+		rotateY.stop();
+		rotateZ.stop();
+	}
+
+	/**
+	 * Decide the constraint for the drag in progress.
+	 */
+	void constrainDrag(final boolean shiftDown, final double dx, final double dy) {
+		if (shiftDown) {
+			if (dragConstraint == null && Math.abs(dx - dy) > 1) {
+				dragConstraint = Math.abs(dx) > Math.abs(dy) ? Constraint.YAW
+						: Constraint.PITCH;
+			}
+		} else if (permaConstraint != null) {
+			dragConstraint = permaConstraint;
+		} else {
+			dragConstraint = null;
+		}
+	}
+
+	void releaseDrag() {
+		dragConstraint = null;
+	}
+
+	/**
+	 * Start the camera rotating, as a drag by (dx, dy) pixels would.
+	 *
+	 * @param ndcX
+	 *            the pointer's horizontal position in the viewport, from -1 to 1
+	 * @param ndcY
+	 *            the pointer's vertical position in the viewport, from -1 to 1
+	 */
+	public void dragRotate(final double dx, final double dy, final double ndcX,
+			final double ndcY) {
+		if (rotateScaleVersion != stateVersion) {
+			rotateScale = Math.pow(Math.log10(1 + distance), 0.5);
+			rotateScaleVersion = stateVersion;
+		}
+		double mult = -rotateScale * 0.00125f;
+
+		double dmx = dx * mult;
+		double dmy = dy * mult;
+
+		// the pointer's position gates each axis here, per event; the sums
+		// are applied together in the next update
+		if (dragConstraint == null || dragConstraint == Constraint.YAW
+				|| dragConstraint == Constraint.SUPPRESS_ROLL) {
+			pendingRotateY += +dmx * (1.0 - ndcY * ndcY);
+		}
+		if (dragConstraint == null || dragConstraint == Constraint.PITCH
+				|| dragConstraint == Constraint.SUPPRESS_ROLL) {
+			pendingRotateX += -dmy * (1.0 - ndcX * ndcX);
+		}
+		if (dragConstraint == null || dragConstraint == Constraint.ROLL) {
+			pendingRotateZ += -dmx * ndcY + dmy * ndcX;
+		}
+		impulsePending();
+	}
+
+	/**
+	 * Start the camera panning, as a drag by (dx, dy) pixels would.
+	 */
+	public void dragPan(final double dx, final double dy) {
+		pendingPanX += dx / 8.;
+		pendingPanY += dy / 8.;
+		impulsePending();
+	}
+
+	/**
+	 * Start the camera zooming, as a vertical drag by dy pixels would.
+	 */
+	public void dragZoom(final double dy) {
+		pendingZoom += dy / 10.0;
+		impulsePending();
+	}
+
+	/**
+	 * Start the camera zooming, as the given number of mouse wheel steps would.
+	 */
+	public void wheelZoom(final double delta) {
+		pendingZoom += delta;
+		impulsePending();
+	}
+
+	/**
+	 * Several drag events may arrive between frames. Since an impulse only
+	 * adds to a velocity, applying their sum once, before damping, leaves each
+	 * action with the same velocity as applying each would.
+	 */
+	private void impulsePending() {
+		impulsesPending = true;
+		wake();
+	}
+
+	private void applyPendingImpulses() {
+		impulsesPending = false;
+		rotateX.impulse(pendingRotateX);
+		rotateY.impulse(pendingRotateY);
+		rotateZ.impulse(pendingRotateZ);
+		dampedPanX.impulse(pendingPanX);
+		dampedPanY.impulse(pendingPanY);
+		dampedZoom.impulse(pendingZoom);
+		pendingRotateX = pendingRotateY = pendingRotateZ = 0;
+		pendingPanX = pendingPanY = pendingZoom = 0;
+	}
+
+	/**
+	 * Zoom compounds: each frame scales the distance by a factor, so a step
+	 * over several frames scales it by the product of theirs. Scaling by
+	 * exp(0.02 * delta), with delta the velocity summed over the step, makes
+	 * that product come out the same however the time is divided. Each frame
+	 * at 60 fps zooms slightly further than the 1 + 0.02 * delta of old
+	 * versions, by about 0.0002 * delta^2 of the distance.
+	 */
+	private void mouseZoom(final double delta) {
+		double new_distance = distance * Math.exp(0.02 * delta);
+		if (new_distance < minimumDistance) {
+			new_distance = minimumDistance;
+			dampedZoom.stop();
+		}
+		if (new_distance > maximumDistance) {
+			new_distance = maximumDistance;
+			dampedZoom.stop();
+		}
+		safeSetDistance(new_distance);
+	}
+
+	private void mousePan(final double dxMouse, final double dyMouse) {
+		final double panScale = distance * 0.0025;
+		pan(dragConstraint == Constraint.PITCH ? 0 : -dxMouse * panScale,
+				dragConstraint == Constraint.YAW ? 0 : -dyMouse * panScale);
+	}
+
+	public double getDistance() {
+		return distance;
+	}
+
+	public void setDistance(final double newDistance) {
+		setDistance(newDistance, 300);
+	}
+
+	public void setDistance(final double newDistance, final long animationTimeMillis) {
+		interps.distance.start(clampDistance(newDistance), animationTimeMillis);
+	}
+
+	public float[] getLookAt() {
+		return getLookAt(new float[3]);
+	}
+
+	/**
+	 * As {@link #getLookAt()}, but writes into the given array.
+	 *
+	 * @return out
+	 */
+	public float[] getLookAt(final float[] out) {
+		out[0] = (float)center.getX();
+		out[1] = (float)center.getY();
+		out[2] = (float)center.getZ();
+		return out;
+	}
+
+	public void lookAt(final double x, final double y, final double z) {
+		interps.center.start(x, y, z, 300);
+	}
+
+	public void lookAt(final double x, final double y, final double z,
+			final double distance) {
+		lookAt(x, y, z);
+		setDistance(distance);
+	}
+
+	public void lookAt(final double x, final double y, final double z,
+			final long animationTimeMillis) {
+		lookAt(x, y, z, distance, animationTimeMillis);
+	}
+
+	public void lookAt(final double x, final double y, final double z,
+			final double distance, final long animationTimeMillis) {
+		setState(rotation.getQ0(), rotation.getQ1(), rotation.getQ2(), rotation.getQ3(),
+				x, y, z, distance, animationTimeMillis, rotationBlend);
+	}
+
+	double clampDistance(final double distance) {
+		return Math.min(maximumDistance, Math.max(minimumDistance, distance));
+	}
+
+	private void safeSetDistance(final double distance) {
+		this.distance = clampDistance(distance);
+		cameraChanged();
+	}
+
+	/**
+	 * Where is the camera in world space?
+	 *
+	 * @return float[]{x,y,z}
+	 */
+	public float[] getPosition() {
+		return getPosition(new float[3]);
+	}
+
+	/**
+	 * As {@link #getPosition()}, but writes into the given array.
+	 *
+	 * @return out
+	 */
+	public float[] getPosition(final float[] out) {
+		updateEye();
+		out[0] = (float)eye.getX();
+		out[1] = (float)eye.getY();
+		out[2] = (float)eye.getZ();
+		return out;
+	}
+
+	public void reset() {
+		reset(300);
+	}
+
+	public void reset(final long animationTimeInMillis) {
+		setState(1, 0, 0, 0, startCenter.getX(), startCenter.getY(), startCenter.getZ(),
+				startDistance, animationTimeInMillis, rotationBlend);
+	}
+
+	public void pan(final double dx, final double dy) {
+		center.add(rotation.applyTo(dx, dy, 0, panDelta));
+		cameraChanged();
+	}
+
+	public void rotateX(final double angle) {
+		rotation.applyToAxisAngle(1, 0, 0, angle);
+		cameraChanged();
+	}
+
+	public void rotateY(final double angle) {
+		rotation.applyToAxisAngle(0, 1, 0, angle);
+		cameraChanged();
+	}
+
+	public void rotateZ(final double angle) {
+		rotation.applyToAxisAngle(0, 0, 1, angle);
+		cameraChanged();
+	}
+
+	public CameraState getState() {
+		return new CameraState(rotation.toRotation(), center.toVector3D(), distance);
+	}
+
+	/**
+	 * Permit arbitrary rotation. (Default mode.)
+	 */
+	public void setFreeRotationMode() {
+		permaConstraint = null;
+	}
+
+	/**
+	 * Only permit yaw.
+	 */
+	public void setYawRotationMode() {
+		permaConstraint = Constraint.YAW;
+	}
+
+	/**
+	 * Only permit pitch.
+	 */
+	public void setPitchRotationMode() {
+		permaConstraint = Constraint.PITCH;
+	}
+
+	/**
+	 * Only permit roll.
+	 */
+	public void setRollRotationMode() {
+		permaConstraint = Constraint.ROLL;
+	}
+
+	/**
+	 * Only suppress roll.
+	 */
+	public void setSuppressRollRotationMode() {
+		permaConstraint = Constraint.SUPPRESS_ROLL;
+	}
+
+	public void setMinimumDistance(final double minimumDistance) {
+		this.minimumDistance = Math.max(minimumDistance, SMALLEST_MINIMUM_DISTANCE);
+		safeSetDistance(distance);
+	}
+
+	public void setMaximumDistance(final double maximumDistance) {
+		this.maximumDistance = maximumDistance;
+		safeSetDistance(distance);
+	}
+
+	public void setState(final CameraState state) {
+		setState(state, 300);
+	}
+
+	public void setState(final CameraState state, final long animationTimeMillis) {
+		setState(state, animationTimeMillis, rotationBlend);
+	}
+
+	/**
+	 * As {@link #setState(CameraState, long)}, blending rotations as given
+	 * instead of as {@link #setRotationBlend(RotationBlend)} says.
+	 */
+	public void setState(final CameraState state, final long animationTimeMillis,
+			final RotationBlend blend) {
+		final Rotation r = state.rotation;
+		final Vector3D c = state.center;
+		setState(r.getQ0(), r.getQ1(), r.getQ2(), r.getQ3(), c.getX(), c.getY(),
+				c.getZ(), state.distance, animationTimeMillis, blend);
+	}
+
+	/**
+	 * As {@link #setState(CameraState, long)}, for a state given by its parts.
+	 */
+	void setState(final double q0, final double q1, final double q2, final double q3,
+			final double x, final double y, final double z, final double distance,
+			final long animationTimeMillis, final RotationBlend blend) {
+		if (animationTimeMillis > 0) {
+			interps.rotation.start(q0, q1, q2, q3, blend, animationTimeMillis);
+			interps.center.start(x, y, z, animationTimeMillis);
+			interps.distance.start(clampDistance(distance), animationTimeMillis);
+		} else {
+			// or a running transition would carry the camera off again
+			interps.cancel();
+			this.rotation.set(q0, q1, q2, q3);
+			this.center.set(x, y, z);
+			this.distance = distance;
+		}
+		cameraChanged();
+	}
+
+	/**
+	 * Move the camera along the given path, from its first key to its last,
+	 * over the given time. The move starts from the path's first key, not
+	 * from where the camera is; to start from here, make the current state
+	 * the first key.
+	 */
+	public void play(final CameraPath path, final long animationTimeMillis) {
+		play(path, animationTimeMillis, rotationBlend);
+	}
+
+	/**
+	 * As {@link #play(CameraPath, long)}, blending rotations as given instead
+	 * of as {@link #setRotationBlend(RotationBlend)} says.
+	 */
+	public void play(final CameraPath path, final long animationTimeMillis,
+			final RotationBlend blend) {
+		interps.path.start(path, blend, animationTimeMillis);
+		cameraChanged();
+	}
+
+	/**
+	 * Choose how transitions and paths blend rotations, unless told
+	 * otherwise. {@link RotationBlend#SLERP} by default.
+	 */
+	public void setRotationBlend(final RotationBlend blend) {
+		this.rotationBlend = blend;
+	}
+
+	public RotationBlend getRotationBlend() {
+		return rotationBlend;
+	}
+
+	/**
+	 * Choose the pace of transitions and paths started from now on. By
+	 * default, or given null, rotation moves at an even pace while the
+	 * look-at point and distance ease in and out, and paths are played at an
+	 * even pace.
+	 */
+	public void setEasing(final Easing easing) {
+		this.easing = easing;
+	}
+
+	public Easing getEasing() {
+		return easing;
+	}
+
+	public void setRotations(final double pitch, final double yaw, final double roll) {
+		interps.rotation.cancel();
+		interps.path.cancel();
+		this.rotation.set(new Rotation(RotationOrder.XYZ, pitch, yaw, roll));
+		cameraChanged();
+	}
+
+	/**
+	 * Express the current camera rotation as an equivalent series
+	 * of world rotations, in X, Y, Z order.
+	 *
+	 * @see PeasyCam#getRotations()
+	 */
+	public float[] getRotations() {
+		return getRotations(new float[3]);
+	}
+
+	/**
+	 * As {@link #getRotations()}, but writes the rotations into the given
+	 * array, and neither throws nor allocates.
+	 *
+	 * @return out
+	 */
+	public float[] getRotations(final float[] out) {
+		if (rotationsVersion != stateVersion) {
+			final double[] angles = this.angles;
+			if (rotation.getAngles(RotationOrder.XYZ, angles)) {
+				rotations[0] = (float)angles[0];
+				rotations[1] = (float)angles[1];
+				rotations[2] = (float)angles[2];
+			} else if (rotation.getAngles(RotationOrder.YXZ, angles)) {
+				rotations[0] = (float)angles[1];
+				rotations[1] = (float)angles[0];
+				rotations[2] = (float)angles[2];
+			} else if (rotation.getAngles(RotationOrder.ZXY, angles)) {
+				rotations[0] = (float)angles[2];
+				rotations[1] = (float)angles[0];
+				rotations[2] = (float)angles[1];
+			} else {
+				rotations[0] = rotations[1] = rotations[2] = 0;
+			}
+			rotationsVersion = stateVersion;
+		}
+		out[0] = rotations[0];
+		out[1] = rotations[1];
+		out[2] = rotations[2];
+		return out;
+	}
+}
@@ -0,0 +1,289 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.Arrays;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * A smooth camera move through any number of key states. The look-at point
+ * and distance follow Catmull-Rom splines through the keys, and the rotation
+ * follows a SQUAD spline, so the camera passes through every key without
+ * stopping. The path is timed by how far the view moves: at each step, the
+ * farthest of the eye's travel, the look-at point's travel, and the arc the
+ * turn sweeps at the look-at distance. So it moves at an even speed however
+ * the keys are spaced, and a key that only turns the camera gets its share
+ * of the time.
+ *
+ * <p>
+ * Play it with {@link PeasyCam#play(CameraPath, long)}, or sample it directly
+ * with {@link #evaluate(double, MutableRotation, MutableVector3D)}. A path is
+ * immutable once built, but evaluate() uses scratch space in the path, so a
+ * path should only be evaluated from one thread at a time.
+ */
+public class CameraPath {
+	// states sampled per segment, to measure the path's length
+	private static final int SAMPLES_PER_SEGMENT = 16;
+
+	private final int keyCount;
+	private final double[] rotation; // q0, q1, q2, q3 per key, on one hemisphere
+	private final double[] control; // SQUAD control rotation per key
+	private final double[] center; // x, y, z per key
+	private final double[] distance;
+
+	// spline parameter, from 0 to keyCount - 1, by distance along the path
+	private final double[] lutParam;
+	private final double[] lutLength;
+	private final double length;
+
+	private final MutableRotation scratch = new MutableRotation();
+
+	public CameraPath(final CameraState... keys) {
+		if (keys.length == 0) {
+			throw new IllegalArgumentException("A camera path needs at least one key.");
+		}
+		keyCount = keys.length;
+		rotation = new double[keyCount * 4];
+		control = new double[keyCount * 4];
+		center = new double[keyCount * 3];
+		distance = new double[keyCount];
+
+		for (int i = 0; i < keyCount; i++) {
+			final Rotation r = keys[i].rotation;
+			final Vector3D c = keys[i].center;
+			final int q = i * 4;
+			double sign = 1;
+			if (i > 0
+					&& r.getQ0() * rotation[q - 4] + r.getQ1() * rotation[q - 3] + r.getQ2()
+							* rotation[q - 2] + r.getQ3() * rotation[q - 1] < 0) {
+				// q and -q are the same rotation; take the one nearer the last key
+				sign = -1;
+			}
+			rotation[q] = sign * r.getQ0();
+			rotation[q + 1] = sign * r.getQ1();
+			rotation[q + 2] = sign * r.getQ2();
+			rotation[q + 3] = sign * r.getQ3();
+			center[i * 3] = c.getX();
+			center[i * 3 + 1] = c.getY();
+			center[i * 3 + 2] = c.getZ();
+			distance[i] = keys[i].distance;
+		}
+		for (int i = 0; i < keyCount; i++) {
+			setControl(i);
+		}
+
+		final int samples = (keyCount - 1) * SAMPLES_PER_SEGMENT;
+		lutParam = new double[samples + 1];
+		lutLength = new double[samples + 1];
+		final MutableRotation r = new MutableRotation();
+		final MutableVector3D c = new MutableVector3D();
+		final MutableVector3D eye = new MutableVector3D();
+		final MutableVector3D lastCenter = new MutableVector3D();
+		final MutableVector3D lastEye = new MutableVector3D();
+		double q0 = 0, q1 = 0, q2 = 0, q3 = 0, lastDistance = 0, s = 0;
+		for (int k = 0; k <= samples; k++) {
+			final double u = (double)k / SAMPLES_PER_SEGMENT;
+			final double d = evaluateAt(u, RotationBlend.SLERP, r, c);
+			r.applyTo(0, 0, 1, eye).scalarMultiply(d).add(c);
+			if (k > 0) {
+				// the turn, as the arc it sweeps at the look-at distance; from
+				// the chord between the quaternions, which keeps its precision
+				// for small angles
+				final double sign = q0 * r.getQ0() + q1 * r.getQ1() + q2 * r.getQ2() + q3
+						* r.getQ3() < 0 ? -1 : 1;
+				final double dq0 = r.getQ0() - sign * q0, dq1 = r.getQ1() - sign * q1;
+				final double dq2 = r.getQ2() - sign * q2, dq3 = r.getQ3() - sign * q3;
+				final double chord = Math.sqrt(dq0 * dq0 + dq1 * dq1 + dq2 * dq2 + dq3 * dq3);
+				final double turn = 4 * Math.asin(Math.min(chord / 2, 1))
+						* (d + lastDistance) / 2;
+				s += Math.max(turn, Math.max(distance(eye, lastEye), distance(c, lastCenter)));
+			}
+			q0 = r.getQ0();
+			q1 = r.getQ1();
+			q2 = r.getQ2();
+			q3 = r.getQ3();
+			lastDistance = d;
+			lastEye.set(eye);
+			lastCenter.set(c);
+			lutParam[k] = u;
+			lutLength[k] = s;
+		}
+		length = s;
+	}
+
+	public int getKeyCount() {
+		return keyCount;
+	}
+
+	/**
+	 * @return how far the view moves along the path, as measured for timing
+	 */
+	public double getLength() {
+		return length;
+	}
+
+	/**
+	 * Find the camera state at the given fraction of the path.
+	 *
+	 * @param t
+	 *            from 0, the first key, to 1, the last; the fraction of the
+	 *            path's length travelled, or of its keys, if the view doesn't
+	 *            move at all
+	 * @param rotation
+	 *            receives the rotation
+	 * @param center
+	 *            receives the look-at point
+	 * @return the distance
+	 */
+	public double evaluate(final double t, final MutableRotation rotation,
+			final MutableVector3D center) {
+		return evaluate(t, RotationBlend.SLERP, rotation, center);
+	}
+
+	/**
+	 * As {@link #evaluate(double, MutableRotation, MutableVector3D)}, blending
+	 * rotations as given.
+	 */
+	public double evaluate(final double t, final RotationBlend blend,
+			final MutableRotation rotation, final MutableVector3D center) {
+		return evaluateAt(parameterAt(Math.min(Math.max(t, 0), 1)), blend, rotation,
+				center);
+	}
+
+	public CameraState getState(final double t) {
+		final MutableRotation r = new MutableRotation();
+		final MutableVector3D c = new MutableVector3D();
+		final double d = evaluate(t, r, c);
+		return new CameraState(r.toRotation(), c.toVector3D(), d);
+	}
+
+	/**
+	 * Map a fraction of the path's length to a spline parameter.
+	 */
+	private double parameterAt(final double t) {
+		if (length == 0) {
+			return t * (keyCount - 1);
+		}
+		final double s = t * length;
+		int k = Arrays.binarySearch(lutLength, s);
+		if (k >= 0) {
+			return lutParam[k];
+		}
+		k = -k - 1; // first sample beyond s
+		if (k >= lutLength.length) {
+			return keyCount - 1;
+		}
+		final double s0 = lutLength[k - 1], s1 = lutLength[k];
+		return InterpolationUtil.linear(lutParam[k - 1], lutParam[k], (s - s0)
+				/ (s1 - s0));
+	}
+
+	/**
+	 * Evaluate the splines at a parameter from 0 to keyCount - 1.
+	 */
+	private double evaluateAt(final double u, final RotationBlend blend,
+			final MutableRotation r, final MutableVector3D c) {
+		final int i = Math.min((int)u, Math.max(keyCount - 2, 0));
+		final double f = u - i;
+		final int i0 = Math.max(i - 1, 0);
+		final int i2 = Math.min(i + 1, keyCount - 1);
+		final int i3 = Math.min(i + 2, keyCount - 1);
+
+		c.set(catmullRom(center[i0 * 3], center[i * 3], center[i2 * 3],
+				center[i3 * 3], f), catmullRom(center[i0 * 3 + 1], center[i * 3 + 1],
+				center[i2 * 3 + 1], center[i3 * 3 + 1], f), catmullRom(center[i0 * 3 + 2],
+				center[i * 3 + 2], center[i2 * 3 + 2], center[i3 * 3 + 2], f));
+
+		// squad(q1, q2, s1, s2, f) = slerp(slerp(q1, q2, f), slerp(s1, s2, f), 2f(1 - f))
+		final int a = i * 4, b = i2 * 4;
+		blend.blendArc(rotation[a], rotation[a + 1], rotation[a + 2], rotation[a + 3],
+				rotation[b], rotation[b + 1], rotation[b + 2], rotation[b + 3], f, r);
+		blend.blendArc(control[a], control[a + 1], control[a + 2], control[a + 3],
+				control[b], control[b + 1], control[b + 2], control[b + 3], f, scratch);
+		blend.blendArc(r.getQ0(), r.getQ1(), r.getQ2(), r.getQ3(),
+				scratch.getQ0(), scratch.getQ1(), scratch.getQ2(), scratch.getQ3(),
+				2 * f * (1 - f), r);
+
+		return Math.max(CameraModel.SMALLEST_MINIMUM_DISTANCE, catmullRom(distance[i0],
+				distance[i], distance[i2], distance[i3], f));
+	}
+
+	private static double distance(final MutableVector3D a, final MutableVector3D b) {
+		final double dx = a.getX() - b.getX(), dy = a.getY() - b.getY();
+		final double dz = a.getZ() - b.getZ();
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	private static double catmullRom(final double p0, final double p1,
+			final double p2, final double p3, final double f) {
+		return 0.5 * (2 * p1 + (p2 - p0) * f + (2 * p0 - 5 * p1 + 4 * p2 - p3) * f * f
+				+ (3 * (p1 - p2) + p3 - p0) * f * f * f);
+	}
+
+	/**
+	 * The SQUAD control rotation for key i, which makes the rotation's
+	 * angular velocity continuous through the key:
+	 * s = q exp(-(log(q^-1 q[i+1]) + log(q^-1 q[i-1])) / 4).
+	 */
+	private void setControl(final int i) {
+		final int q = i * 4;
+		if (i == 0 || i == keyCount - 1) {
+			System.arraycopy(rotation, q, control, q, 4);
+			return;
+		}
+		final double w = rotation[q];
+		final double x = -rotation[q + 1], y = -rotation[q + 2], z = -rotation[q + 3];
+		double lx = 0, ly = 0, lz = 0;
+		for (int n = q - 4; n <= q + 4; n += 8) {
+			// log(inverse(q) * q[n]), accumulated
+			final double bw = rotation[n], bx = rotation[n + 1];
+			final double by = rotation[n + 2], bz = rotation[n + 3];
+			final double pw = w * bw - x * bx - y * by - z * bz;
+			final double px = w * bx + x * bw + y * bz - z * by;
+			final double py = w * by - x * bz + y * bw + z * bx;
+			final double pz = w * bz + x * by - y * bx + z * bw;
+			final double v = Math.sqrt(px * px + py * py + pz * pz);
+			if (v > 1e-12) {
+				final double scale = Math.atan2(v, pw) / v;
+				lx += px * scale;
+				ly += py * scale;
+				lz += pz * scale;
+			}
+		}
+		lx *= -0.25;
+		ly *= -0.25;
+		lz *= -0.25;
+
+		// exp of the pure quaternion l
+		final double theta = Math.sqrt(lx * lx + ly * ly + lz * lz);
+		final double ew = Math.cos(theta);
+		final double scale = theta > 1e-12 ? Math.sin(theta) / theta : 1;
+		final double ex = lx * scale, ey = ly * scale, ez = lz * scale;
+
+		// q * exp(l)
+		final double aw = rotation[q], ax = rotation[q + 1];
+		final double ay = rotation[q + 2], az = rotation[q + 3];
+		control[q] = aw * ew - ax * ex - ay * ey - az * ez;
+		control[q + 1] = aw * ex + ax * ew + ay * ez - az * ey;
+		control[q + 2] = aw * ey - ax * ez + ay * ew + az * ex;
+		control[q + 3] = aw * ez + ax * ey - ay * ex + az * ew;
+	}
+}
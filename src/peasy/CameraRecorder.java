@@ -0,0 +1,342 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Records a camera's state, with a timestamp, to a file, for replay by
+ * {@link CameraTrackPlayer}. Recording costs the animation thread one copy
+ * into an off-heap ring buffer; a background thread moves the records from
+ * there into the file, which it writes through memory-mapped windows. If
+ * the writer falls so far behind that the ring fills up, new records are
+ * dropped rather than waited for; see {@link #getDroppedCount()}.
+ *
+ * <p>
+ * Records must all come from one thread. Give a recorder to
+ * {@link PeasyCam#setRecorder(CameraRecorder)} to record every frame, and
+ * {@link #close()} it when done; the camera lets go of it once it's closed,
+ * and records offered after that are ignored. The writer keeps the record
+ * count in the header up to date as it goes, so that if the sketch dies
+ * before closing the recorder, the file still plays, up to about the last
+ * millisecond's records.
+ *
+ * <p>
+ * The file is a 24-byte header (magic number, version, format ordinal,
+ * record size, record count), followed by records of a long timestamp in
+ * nanoseconds and a state in the given {@link CameraStateCodec.Format}, all
+ * big-endian.
+ */
+public class CameraRecorder implements Closeable {
+	static final int MAGIC = 0x50435452; // "PCTR"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 24;
+	// offset of the record count in the header
+	static final int COUNT_OFFSET = 16;
+
+	// how much of the file is mapped at a time
+	private static final int WINDOW_SIZE = 64 << 20;
+
+	private final CameraStateCodec codec;
+	private final int recordSize;
+	private final int capacity;
+	private final ByteBuffer ring;
+	private final ByteBuffer producerView;
+	private final ByteBuffer consumerView;
+
+	// records are numbered from 0; head and tail only ever increase
+	private volatile long head = 0;
+	private volatile long tail = 0;
+	private long dropped = 0;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long windowRecords;
+	private MappedByteBuffer window;
+	private long mappedWindow = -1;
+	// whether every window mapped so far has been unmapped, or is the current one
+	private boolean unmapped = true;
+
+	// the record count last written to the header, and a buffer to write it
+	private long counted = 0;
+	private final ByteBuffer countBuffer = ByteBuffer.allocate(8);
+
+	private final Thread writer;
+	private volatile boolean closed = false;
+	private volatile IOException failure = null;
+
+	/**
+	 * Record exact states, with room for 4096 records in flight.
+	 */
+	public CameraRecorder(final File file) throws IOException {
+		this(file, CameraStateCodec.Format.FLOAT64, 4096);
+	}
+
+	/**
+	 * @param capacity
+	 *            how many records the ring buffer holds before the writer
+	 *            thread catches up
+	 */
+	public CameraRecorder(final File file, final CameraStateCodec.Format format,
+			final int capacity) throws IOException {
+		this.codec = new CameraStateCodec(format);
+		this.recordSize = 8 + format.size();
+		this.capacity = capacity;
+		this.ring = ByteBuffer.allocateDirect(capacity * recordSize);
+		this.producerView = ring.duplicate();
+		this.consumerView = ring.duplicate();
+		this.windowRecords = WINDOW_SIZE / recordSize;
+
+		this.file = new RandomAccessFile(file, "rw");
+		this.file.setLength(0);
+		this.channel = this.file.getChannel();
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(format.ordinal()).putInt(recordSize)
+				.putLong(0).flip();
+		channel.write(header, 0);
+
+		writer = new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, "PeasyCam recorder");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Record the given camera's current state, stamped with the time of its
+	 * clock.
+	 *
+	 * @return false if the ring buffer was full, and the record was dropped,
+	 *         or if the recorder has been closed
+	 */
+	public boolean record(final CameraModel model) {
+		return record(model.now(), model.rotation(), model.center(), model.getDistance());
+	}
+
+	public boolean record(final long nanos, final CameraState state) {
+		final Rotation r = state.rotation;
+		final Vector3D c = state.center;
+		return record(nanos, r.getQ0(), r.getQ1(), r.getQ2(), r.getQ3(), c.getX(),
+				c.getY(), c.getZ(), state.distance);
+	}
+
+	public boolean record(final long nanos, final MutableRotation rotation,
+			final MutableVector3D center, final double distance) {
+		return record(nanos, rotation.getQ0(), rotation.getQ1(), rotation.getQ2(),
+				rotation.getQ3(), center.getX(), center.getY(), center.getZ(), distance);
+	}
+
+	private boolean record(final long nanos, final double q0, final double q1,
+			final double q2, final double q3, final double x, final double y,
+			final double z, final double distance) {
+		if (closed) {
+			return false;
+		}
+		final long h = head;
+		if (h - tail >= capacity) {
+			dropped++;
+			return false;
+		}
+		producerView.position((int)(h % capacity) * recordSize);
+		producerView.putLong(nanos);
+		codec.encode(q0, q1, q2, q3, x, y, z, distance, producerView);
+		// publishes the record to the writer
+		head = h + 1;
+		return true;
+	}
+
+	/**
+	 * @return how many records have been accepted
+	 */
+	public long getRecordedCount() {
+		return head;
+	}
+
+	/**
+	 * @return how many records were dropped because the ring buffer was full
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Write out everything recorded so far, update the header, and close the
+	 * file. The file is cut to the records' length once it is no longer
+	 * mapped; if the platform won't unmap it on demand, it is left at the
+	 * length of the windows mapped, which readers ignore past the record
+	 * count in the header.
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		LockSupport.unpark(writer);
+		// the window must not be touched, let alone unmapped, while the
+		// writer might still be using it
+		boolean interrupted = false;
+		while (writer.isAlive()) {
+			try {
+				writer.join();
+			} catch (final InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			if (failure != null) {
+				throw failure;
+			}
+			if (window != null) {
+				window.force();
+				release(window);
+				window = null;
+			}
+			writeCount(tail);
+			// some platforms refuse to shorten a file that is still mapped
+			if (unmapped) {
+				channel.truncate(HEADER_SIZE + tail * recordSize);
+			}
+			channel.force(true);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * The writer thread: copy records from the ring into the file until
+	 * closed, and the ring is empty.
+	 */
+	private void drain() {
+		try {
+			while (true) {
+				// read before head, so that nothing recorded before closing is missed
+				final boolean finishing = closed;
+				final long h = head;
+				long t = tail;
+				if (t == h) {
+					if (finishing) {
+						return;
+					}
+					if (t != counted) {
+						writeCount(t);
+					}
+					LockSupport.parkNanos(1000000);
+					continue;
+				}
+				for (; t < h; t++) {
+					final long windowIndex = t / windowRecords;
+					if (windowIndex != mappedWindow) {
+						if (window != null) {
+							window.force();
+							release(window);
+							writeCount(t);
+						}
+						window = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE
+								+ windowIndex * windowRecords * recordSize, windowRecords
+								* recordSize);
+						mappedWindow = windowIndex;
+					}
+					final int from = (int)(t % capacity) * recordSize;
+					consumerView.limit(from + recordSize).position(from);
+					window.position((int)(t % windowRecords) * recordSize);
+					window.put(consumerView);
+					// frees the slot for the producer
+					tail = t + 1;
+				}
+			}
+		} catch (final IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Write the record count into the header. The writer does so whenever it
+	 * catches up, or moves on from a window, so that a file whose recorder
+	 * was never closed, because the sketch crashed, say, can still be played
+	 * up to the last count written.
+	 */
+	private void writeCount(final long records) throws IOException {
+		countBuffer.putLong(0, records);
+		countBuffer.clear();
+		while (countBuffer.hasRemaining()) {
+			channel.write(countBuffer, COUNT_OFFSET + countBuffer.position());
+		}
+		counted = records;
+	}
+
+	/**
+	 * Unmap a window now, rather than whenever it is garbage collected, if the
+	 * platform allows it; otherwise note that the file is still mapped. The
+	 * window must not be used afterwards.
+	 */
+	private void release(final MappedByteBuffer buffer) {
+		if (!unmap(buffer)) {
+			unmapped = false;
+		}
+	}
+
+	private static boolean unmap(final MappedByteBuffer buffer) {
+		try {
+			// Java 9 and later
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+					ByteBuffer.class);
+			final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return true;
+		} catch (final NoSuchMethodException e) {
+			// Java 8: the buffer's own cleaner
+			try {
+				final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				final Object cleaner = cleanerMethod.invoke(buffer);
+				final Method clean = cleaner.getClass().getMethod("clean");
+				clean.setAccessible(true);
+				clean.invoke(cleaner);
+				return true;
+			} catch (final Exception e2) {
+				return false;
+			}
+		} catch (final Exception e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The camera's state as of its last change, for reading from other threads.
+ * The animation thread publishes the state whenever it feeds the camera;
+ * any number of threads may read it at any time, without locking or
+ * allocating, and always get a whole state from one moment, never a mix of
+ * two.
+ *
+ * <p>
+ * It's a sequence lock: the writer makes the sequence number odd while it
+ * writes, and readers retry until they see the same even number before and
+ * after reading.
+ *
+ * @see PeasyCam#getSnapshot()
+ */
+public class CameraSnapshot {
+	private static final int SEQUENCE = 0;
+	private static final int Q0 = 1, Q1 = 2, Q2 = 3, Q3 = 4;
+	private static final int CENTER_X = 5, CENTER_Y = 6, CENTER_Z = 7;
+	private static final int POSITION_X = 8, POSITION_Y = 9, POSITION_Z = 10;
+	private static final int DISTANCE = 11;
+	private static final int SIZE = 12;
+
+	private final AtomicLongArray values = new AtomicLongArray(SIZE);
+
+	/**
+	 * Publish the given camera's state. Only one thread may publish.
+	 */
+	void publish(final CameraModel model) {
+		final MutableRotation r = model.rotation();
+		final MutableVector3D c = model.center();
+		final MutableVector3D p = model.eye();
+		final long sequence = values.get(SEQUENCE);
+		values.set(SEQUENCE, sequence + 1);
+		put(Q0, r.getQ0());
+		put(Q1, r.getQ1());
+		put(Q2, r.getQ2());
+		put(Q3, r.getQ3());
+		put(CENTER_X, c.getX());
+		put(CENTER_Y, c.getY());
+		put(CENTER_Z, c.getZ());
+		put(POSITION_X, p.getX());
+		put(POSITION_Y, p.getY());
+		put(POSITION_Z, p.getZ());
+		put(DISTANCE, model.getDistance());
+		values.set(SEQUENCE, sequence + 2);
+	}
+
+	/**
+	 * Copy the latest state into the given objects, any of which may be null.
+	 *
+	 * @param position
+	 *            receives the camera's eye position
+	 * @return the distance
+	 */
+	public double read(final MutableRotation rotation, final MutableVector3D center,
+			final MutableVector3D position) {
+		while (true) {
+			final long before = values.get(SEQUENCE);
+			if ((before & 1) != 0) {
+				continue;
+			}
+			final double q0 = get(Q0), q1 = get(Q1), q2 = get(Q2), q3 = get(Q3);
+			final double cx = get(CENTER_X), cy = get(CENTER_Y), cz = get(CENTER_Z);
+			final double px = get(POSITION_X), py = get(POSITION_Y), pz = get(POSITION_Z);
+			final double distance = get(DISTANCE);
+			if (values.get(SEQUENCE) != before) {
+				continue;
+			}
+			if (rotation != null) {
+				rotation.set(q0, q1, q2, q3);
+			}
+			if (center != null) {
+				center.set(cx, cy, cz);
+			}
+			if (position != null) {
+				position.set(px, py, pz);
+			}
+			return distance;
+		}
+	}
+
+	/**
+	 * @return the latest state, as a new CameraState
+	 */
+	public CameraState getState() {
+		final MutableRotation r = new MutableRotation();
+		final MutableVector3D c = new MutableVector3D();
+		final double distance = read(r, c, null);
+		return new CameraState(r.toRotation(), c.toVector3D(), distance);
+	}
+
+	/**
+	 * @return how many times the state has been published; poll this to
+	 *         notice changes without reading the state
+	 */
+	public long getVersion() {
+		return values.get(SEQUENCE) >>> 1;
+	}
+
+	private void put(final int i, final double v) {
+		values.set(i, Double.doubleToRawLongBits(v));
+	}
+
+	private double get(final int i) {
+		return Double.longBitsToDouble(values.get(i));
+	}
+}
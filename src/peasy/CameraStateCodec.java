@@ -0,0 +1,263 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.nio.ByteBuffer;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * Reads and writes camera states as fixed-size binary records: rotation,
+ * look-at point and distance, with no headers or field names, in the byte
+ * order of the buffer given. Much smaller and faster than the
+ * {@link java.io.Serializable} form of {@link CameraState}.
+ */
+public class CameraStateCodec {
+	public static enum Format {
+		/**
+		 * Everything as doubles: exact. 64 bytes.
+		 */
+		FLOAT64(64),
+		/**
+		 * Everything as floats, as precise as the renderer's matrices; a
+		 * distance beyond the largest float is stored as the largest float.
+		 * 32 bytes.
+		 */
+		FLOAT32(32),
+		/**
+		 * The rotation packed into one long, by dropping its largest quaternion
+		 * component and storing the other three in 20 bits each, within a few
+		 * millionths of a radian; the rest as floats, as in FLOAT32. 24 bytes.
+		 */
+		QUANTIZED(24);
+
+		private final int size;
+
+		private Format(final int size) {
+			this.size = size;
+		}
+
+		/**
+		 * @return the size of one encoded state, in bytes
+		 */
+		public int size() {
+			return size;
+		}
+	}
+
+	// smallest-three quantization: the three smaller components of a unit
+	// quaternion with its largest component positive lie within +/- 1/sqrt(2)
+	private static final int BITS = 20;
+	private static final long MASK = (1L << BITS) - 1;
+	private static final double RANGE = Math.sqrt(0.5);
+
+	private final Format format;
+
+	public CameraStateCodec(final Format format) {
+		this.format = format;
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return the size of one encoded state, in bytes
+	 */
+	public int size() {
+		return format.size;
+	}
+
+	public void encode(final CameraState state, final ByteBuffer out) {
+		final Rotation r = state.rotation;
+		final Vector3D c = state.center;
+		encode(r.getQ0(), r.getQ1(), r.getQ2(), r.getQ3(), c.getX(), c.getY(),
+				c.getZ(), state.distance, out);
+	}
+
+	/**
+	 * Encode states[offset] to states[offset + count - 1], one after another.
+	 */
+	public void encode(final CameraState[] states, final int offset, final int count,
+			final ByteBuffer out) {
+		for (int i = offset; i < offset + count; i++) {
+			encode(states[i], out);
+		}
+	}
+
+	/**
+	 * As {@link #encode(CameraState, ByteBuffer)}, for the given parts of a
+	 * state.
+	 */
+	public void encode(final MutableRotation rotation, final MutableVector3D center,
+			final double distance, final ByteBuffer out) {
+		encode(rotation.getQ0(), rotation.getQ1(), rotation.getQ2(), rotation.getQ3(),
+				center.getX(), center.getY(), center.getZ(), distance, out);
+	}
+
+	void encode(final double q0, final double q1, final double q2, final double q3,
+			final double x, final double y, final double z, final double distance,
+			final ByteBuffer out) {
+		switch (format) {
+		case FLOAT64:
+			out.putDouble(q0).putDouble(q1).putDouble(q2).putDouble(q3);
+			out.putDouble(x).putDouble(y).putDouble(z).putDouble(distance);
+			break;
+		case FLOAT32:
+			out.putFloat((float)q0).putFloat((float)q1).putFloat((float)q2)
+					.putFloat((float)q3);
+			out.putFloat((float)x).putFloat((float)y).putFloat((float)z)
+					.putFloat(floatDistance(distance));
+			break;
+		case QUANTIZED:
+			out.putLong(pack(q0, q1, q2, q3));
+			out.putFloat((float)x).putFloat((float)y).putFloat((float)z)
+					.putFloat(floatDistance(distance));
+			break;
+		}
+	}
+
+	public CameraState decode(final ByteBuffer in) {
+		final MutableRotation r = new MutableRotation();
+		final MutableVector3D c = new MutableVector3D();
+		final double distance = decode(in, r, c);
+		return new CameraState(r.toRotation(), c.toVector3D(), distance);
+	}
+
+	/**
+	 * Decode count states into states[offset] onwards.
+	 */
+	public void decode(final ByteBuffer in, final CameraState[] states,
+			final int offset, final int count) {
+		for (int i = offset; i < offset + count; i++) {
+			states[i] = decode(in);
+		}
+	}
+
+	/**
+	 * Decode one state into the given rotation and center, without
+	 * allocating.
+	 *
+	 * @return the distance
+	 */
+	public double decode(final ByteBuffer in, final MutableRotation rotation,
+			final MutableVector3D center) {
+		switch (format) {
+		case FLOAT64:
+			rotation.set(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+			center.set(in.getDouble(), in.getDouble(), in.getDouble());
+			return in.getDouble();
+		case FLOAT32:
+			rotation.setNormalized(in.getFloat(), in.getFloat(), in.getFloat(),
+					in.getFloat());
+			break;
+		default:
+			unpack(in.getLong(), rotation);
+			break;
+		}
+		center.set(in.getFloat(), in.getFloat(), in.getFloat());
+		return in.getFloat();
+	}
+
+	/**
+	 * The distance as a float, no farther than the largest float, so that the
+	 * default, unlimited maximum distance doesn't come back as infinity.
+	 */
+	private static float floatDistance(final double distance) {
+		return (float)Math.min(distance, Float.MAX_VALUE);
+	}
+
+	/**
+	 * Pack a unit quaternion into 2 bits saying which component is largest,
+	 * followed by the other three, quantized.
+	 */
+	private static long pack(double q0, double q1, double q2, double q3) {
+		final double a0 = Math.abs(q0), a1 = Math.abs(q1);
+		final double a2 = Math.abs(q2), a3 = Math.abs(q3);
+		int largest = 0;
+		double max = a0;
+		if (a1 > max) {
+			largest = 1;
+			max = a1;
+		}
+		if (a2 > max) {
+			largest = 2;
+			max = a2;
+		}
+		if (a3 > max) {
+			largest = 3;
+		}
+		// q and -q are the same rotation; make the dropped component positive
+		final double sign;
+		switch (largest) {
+		case 0:
+			sign = Math.signum(q0);
+			break;
+		case 1:
+			sign = Math.signum(q1);
+			q1 = q0;
+			break;
+		case 2:
+			sign = Math.signum(q2);
+			q2 = q1;
+			q1 = q0;
+			break;
+		default:
+			sign = Math.signum(q3);
+			q3 = q2;
+			q2 = q1;
+			q1 = q0;
+			break;
+		}
+		return (long)largest << (3 * BITS) | quantize(sign * q1) << (2 * BITS)
+				| quantize(sign * q2) << BITS | quantize(sign * q3);
+	}
+
+	private static void unpack(final long packed, final MutableRotation out) {
+		final int largest = (int)(packed >>> (3 * BITS));
+		final double a = dequantize(packed >>> (2 * BITS));
+		final double b = dequantize(packed >>> BITS);
+		final double c = dequantize(packed);
+		final double d = Math.sqrt(Math.max(0, 1 - a * a - b * b - c * c));
+		switch (largest) {
+		case 0:
+			out.setNormalized(d, a, b, c);
+			break;
+		case 1:
+			out.setNormalized(a, d, b, c);
+			break;
+		case 2:
+			out.setNormalized(a, b, d, c);
+			break;
+		default:
+			out.setNormalized(a, b, c, d);
+			break;
+		}
+	}
+
+	private static long quantize(final double v) {
+		final double unit = (Math.min(Math.max(v / RANGE, -1), 1) + 1) / 2;
+		return Math.round(unit * MASK);
+	}
+
+	private static double dequantize(final long bits) {
+		return ((bits & MASK) / (double)MASK * 2 - 1) * RANGE;
+	}
+}
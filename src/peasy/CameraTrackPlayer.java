@@ -0,0 +1,358 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Plays back a track written by {@link CameraRecorder}, by setting a camera's
+ * state every frame. Between recorded samples, the rotation is slerped and
+ * the rest interpolated linearly, so the track plays smoothly at any rate and
+ * frame rate.
+ *
+ * <p>
+ * The file is memory-mapped, and read only where playback or seeking touches
+ * it, so even very long tracks open at once. Seeking is a binary search over
+ * a sparse index of timestamps, filled in as it's used.
+ *
+ * <p>
+ * Call {@link #update()} once per frame, from the animation thread, before
+ * drawing. Playback is timed by the camera's clock.
+ */
+public class CameraTrackPlayer implements Closeable {
+	// records per entry in the time index
+	private static final int INDEX_STRIDE = 1024;
+	// marks an index entry not yet read from the file
+	private static final long UNREAD = Long.MIN_VALUE;
+
+	private final CameraModel model;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final CameraStateCodec codec;
+	private final int recordSize;
+	private final long count;
+
+	// a buffer can map at most 2GB, so big files are mapped in segments
+	private final long segmentRecords;
+	private final MappedByteBuffer[] segments;
+	private final long[] index;
+
+	private final long startNanos;
+	private final long duration;
+
+	// nanoseconds into the track
+	private double position = 0;
+	private double rate = 1;
+	private boolean playing = false;
+	private long lastNanos;
+	// the sample found last, where the next search starts looking
+	private long cursor = 0;
+
+	private final MutableRotation fromRotation = new MutableRotation();
+	private final MutableRotation toRotation = new MutableRotation();
+	private final MutableVector3D fromCenter = new MutableVector3D();
+	private final MutableVector3D toCenter = new MutableVector3D();
+
+	public CameraTrackPlayer(final File file, final PeasyCam cam) throws IOException {
+		this(file, cam.getModel());
+	}
+
+	public CameraTrackPlayer(final File file, final CameraModel model) throws IOException {
+		this.model = model;
+		this.file = new RandomAccessFile(file, "r");
+		this.channel = this.file.getChannel();
+		try {
+			final ByteBuffer header = ByteBuffer.allocate(CameraRecorder.HEADER_SIZE);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) {
+					throw new IOException(file + " is not a camera track.");
+				}
+			}
+			header.flip();
+			final int magic = header.getInt();
+			final int version = header.getInt();
+			final int format = header.getInt();
+			if (magic != CameraRecorder.MAGIC || version != CameraRecorder.VERSION
+					|| format < 0 || format >= CameraStateCodec.Format.values().length) {
+				throw new IOException(file + " is not a camera track.");
+			}
+			this.codec = new CameraStateCodec(CameraStateCodec.Format.values()[format]);
+			this.recordSize = header.getInt();
+			if (recordSize != 8 + codec.size()) {
+				throw new IOException(file + " is not a camera track.");
+			}
+			this.count = countRecords(header.getLong(CameraRecorder.COUNT_OFFSET));
+			if (count <= 0) {
+				throw new IOException(file + " has no records.");
+			}
+		} catch (final IOException e) {
+			this.file.close();
+			throw e;
+		}
+
+		this.segmentRecords = Integer.MAX_VALUE / recordSize;
+		this.segments = new MappedByteBuffer[(int)((count - 1) / segmentRecords + 1)];
+		this.index = new long[(int)((count - 1) / INDEX_STRIDE + 1)];
+		Arrays.fill(index, UNREAD);
+
+		this.startNanos = timeOf(0);
+		this.duration = timeOf(count - 1) - startNanos;
+	}
+
+	/**
+	 * The header's count may lag the records written, or be 0, if the
+	 * recorder was never closed. Count on from it through the records that
+	 * were written: those that aren't all zeroes, with timestamps in order.
+	 */
+	private long countRecords(final long counted) throws IOException {
+		final long room = (channel.size() - CameraRecorder.HEADER_SIZE) / recordSize;
+		final ByteBuffer record = ByteBuffer.allocate(recordSize);
+		long n = Math.min(Math.max(counted, 0), room);
+		long previous = n > 0 ? read(n - 1, record).getLong(0) : Long.MIN_VALUE;
+		for (; n < room; n++) {
+			read(n, record);
+			boolean written = false;
+			for (int i = 0; i < recordSize && !written; i++) {
+				written = record.get(i) != 0;
+			}
+			final long time = record.getLong(0);
+			if (!written || time < previous) {
+				break;
+			}
+			previous = time;
+		}
+		return n;
+	}
+
+	private ByteBuffer read(final long n, final ByteBuffer record) throws IOException {
+		record.clear();
+		final long position = CameraRecorder.HEADER_SIZE + n * recordSize;
+		while (record.hasRemaining()) {
+			if (channel.read(record, position + record.position()) < 0) {
+				throw new IOException("The camera track ended early.");
+			}
+		}
+		return record;
+	}
+
+	/**
+	 * Play from the current time. At the end of the track in the direction of
+	 * play, start again from the other end.
+	 */
+	public void play() {
+		if (position >= duration && rate > 0) {
+			position = 0;
+		} else if (position <= 0 && rate < 0) {
+			position = duration;
+		}
+		playing = true;
+		lastNanos = model.now();
+	}
+
+	public void pause() {
+		playing = false;
+	}
+
+	public boolean isPlaying() {
+		return playing;
+	}
+
+	/**
+	 * Play faster (above 1), slower (below 1), or backwards (below 0).
+	 */
+	public void setRate(final double rate) {
+		this.rate = rate;
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * Jump to the given time into the track, and show the camera there.
+	 */
+	public void seek(final long millis) {
+		position = Math.min(Math.max(millis * 1e6, 0), duration);
+		show();
+	}
+
+	/**
+	 * @return how far into the track playback is, in milliseconds
+	 */
+	public long getTime() {
+		return (long)(position / 1e6);
+	}
+
+	/**
+	 * @return the time from the first record to the last, in milliseconds
+	 */
+	public long getDuration() {
+		return duration / 1000000;
+	}
+
+	public long getRecordCount() {
+		return count;
+	}
+
+	/**
+	 * If playing, advance by the time since the last update, and show the
+	 * camera there. Playback stops on reaching the end it is heading for.
+	 */
+	public void update() {
+		if (!playing) {
+			return;
+		}
+		final long now = model.now();
+		position += (now - lastNanos) * rate;
+		lastNanos = now;
+		if (position >= duration) {
+			position = duration;
+			if (rate > 0) {
+				playing = false;
+			}
+		}
+		if (position <= 0) {
+			position = 0;
+			if (rate < 0) {
+				playing = false;
+			}
+		}
+		show();
+	}
+
+	/**
+	 * @return the recorded state at the given time into the track
+	 */
+	public CameraState getState(final long millis) {
+		final double t = Math.min(Math.max(millis * 1e6, 0), duration);
+		final double distance = sample(startNanos + t);
+		return new CameraState(toRotation.toRotation(), toCenter.toVector3D(), distance);
+	}
+
+	public void close() throws IOException {
+		file.close();
+	}
+
+	private void show() {
+		final double distance = sample(startNanos + position);
+		model.setState(toRotation.getQ0(), toRotation.getQ1(), toRotation.getQ2(),
+				toRotation.getQ3(), toCenter.getX(), toCenter.getY(), toCenter.getZ(),
+				distance, 0, model.getRotationBlend());
+	}
+
+	/**
+	 * Interpolate the track at the given timestamp into toRotation and
+	 * toCenter.
+	 *
+	 * @return the distance
+	 */
+	private double sample(final double nanos) {
+		final long i = find(nanos);
+		final long t0 = timeOf(i);
+		final double d0 = codec.decode(at(i, 8), fromRotation, fromCenter);
+		if (i == count - 1 || nanos <= t0) {
+			toRotation.set(fromRotation.getQ0(), fromRotation.getQ1(),
+					fromRotation.getQ2(), fromRotation.getQ3());
+			toCenter.set(fromCenter.getX(), fromCenter.getY(), fromCenter.getZ());
+			return d0;
+		}
+		final long t1 = timeOf(i + 1);
+		final double d1 = codec.decode(at(i + 1, 8), toRotation, toCenter);
+		final double f = t1 > t0 ? (nanos - t0) / (t1 - t0) : 1;
+		InterpolationUtil.slerp(fromRotation, toRotation, f, toRotation);
+		InterpolationUtil.linear(fromCenter, toCenter, f, toCenter);
+		return InterpolationUtil.linear(d0, d1, f);
+	}
+
+	/**
+	 * @return the last record at or before the given timestamp, or the first
+	 *         record if there is none
+	 */
+	private long find(final double nanos) {
+		// playback mostly moves to the same or the next sample
+		if (timeOf(cursor) <= nanos
+				&& (cursor == count - 1 || nanos < timeOf(cursor + 1))) {
+			return cursor;
+		}
+		if (cursor + 2 < count && timeOf(cursor + 1) <= nanos && nanos < timeOf(cursor + 2)) {
+			return ++cursor;
+		}
+
+		// find the stride by the index, then the record within it
+		int lo = 0, hi = index.length - 1;
+		while (lo < hi) {
+			final int mid = (lo + hi + 1) >>> 1;
+			if (indexTime(mid) <= nanos) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		long first = (long)lo * INDEX_STRIDE;
+		long last = Math.min(first + INDEX_STRIDE, count) - 1;
+		while (first < last) {
+			final long mid = (first + last + 1) >>> 1;
+			if (timeOf(mid) <= nanos) {
+				first = mid;
+			} else {
+				last = mid - 1;
+			}
+		}
+		return cursor = first;
+	}
+
+	private long indexTime(final int entry) {
+		if (index[entry] == UNREAD) {
+			index[entry] = timeOf((long)entry * INDEX_STRIDE);
+		}
+		return index[entry];
+	}
+
+	private long timeOf(final long record) {
+		return at(record, 0).getLong();
+	}
+
+	/**
+	 * @return the mapped segment holding the given record, positioned at the
+	 *         given offset into it
+	 */
+	private ByteBuffer at(final long record, final int offset) {
+		final int s = (int)(record / segmentRecords);
+		if (segments[s] == null) {
+			final long first = s * segmentRecords;
+			final long records = Math.min(segmentRecords, count - first);
+			try {
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+						CameraRecorder.HEADER_SIZE + first * recordSize, records * recordSize);
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		final ByteBuffer segment = segments[s];
+		segment.position((int)(record - s * segmentRecords) * recordSize + offset);
+		return segment;
+	}
+}
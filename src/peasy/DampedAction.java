@@ -23,44 +23,117 @@ package peasy;
  * 
  * http://www.davebollinger.com/works/p5/catmouse/CatMouse.pde.txt
  * 
+ * <p>
+ * Velocity and friction are expressed per reference frame of 1/60 second. The
+ * action is advanced by the real time elapsed, and the velocity decays
+ * exponentially over that time, so the motion follows the same path at any
+ * frame rate. It stops when the velocity has decayed to {@link #STOP}, at
+ * that moment rather than at the next update, for the same reason; a push
+ * smaller than that moves for one update before stopping.
+ * 
  * @author jdf
  * 
  */
 abstract public class DampedAction {
-	private final PeasyCam p;
+	static final double REFERENCE_FRAME_NANOS = 1e9 / 60;
+	// the speed, per reference frame, below which the action stops
+	static final double STOP = .001;
+
+	private final CameraModel model;
 	private double velocity;
 	private final double damping;
 
 	public DampedAction(final PeasyCam p) {
-		this(p, 0.16);
+		this(p.getModel());
 	}
 
 	public DampedAction(final PeasyCam p, final double friction) {
-		this.p = p;
+		this(p.getModel(), friction);
+	}
+
+	public DampedAction(final CameraModel model) {
+		this(model, 0.16);
+	}
+
+	public DampedAction(final CameraModel model, final double friction) {
+		this.model = model;
 		this.velocity = 0;
 		this.damping = 1.0 - friction;
-		p.getApplet().registerMethod("draw", this);
+		model.addDampedAction(this);
 	}
 
 	public void impulse(final double impulse) {
 		velocity += impulse;
+		model.wake();
 	}
 
+	/**
+	 * Advance by one reference frame.
+	 */
 	public void draw() {
+		update(1);
+	}
+
+	/**
+	 * Advance by the given number of reference frames, which need not be a
+	 * whole number. Called from the camera's own per-frame update.
+	 */
+	void update(final double frames) {
 		if (velocity == 0) {
 			return;
 		}
-		behave(velocity);
-		p.feed();
-		velocity *= damping;
-		if (Math.abs(velocity) < .001) {
+		final double decay = Math.pow(damping, frames);
+		behave(displacement(velocity, damping, frames, decay, travel(damping, frames,
+				decay)));
+		model.cameraChanged();
+		velocity *= decay;
+		if (Math.abs(velocity) < STOP) {
 			velocity = 0;
 		}
 	}
 
+	/**
+	 * How far the given velocity carries over a step. A velocity that decays
+	 * to STOP within the step moves only until then, so that it stops at the
+	 * same moment at any frame rate; one already below STOP, such as a small
+	 * new impulse, moves for the whole step before stopping.
+	 *
+	 * @param decay
+	 *            damping raised to the power of frames
+	 * @param travel
+	 *            {@link #travel(double, double, double)} for the step
+	 */
+	static double displacement(final double velocity, final double damping,
+			final double frames, final double decay, final double travel) {
+		final double speed = Math.abs(velocity);
+		if (speed < STOP || speed * decay >= STOP) {
+			return velocity * travel;
+		}
+		final double untilStop = Math.log(STOP / speed) / Math.log(damping);
+		return velocity
+				* travel(damping, untilStop, Math.pow(damping, untilStop));
+	}
+
+	/**
+	 * How far a unit velocity carries over the given number of frames: the sum
+	 * of the geometric series damping^k, so that one long step moves as far as
+	 * several short ones.
+	 *
+	 * @param decay
+	 *            damping raised to the power of frames
+	 */
+	static double travel(final double damping, final double frames,
+			final double decay) {
+		return damping == 1 ? frames : (1 - decay) / (1 - damping);
+	}
+
 	public void stop() {
 		velocity = 0;
 	}
 
+	boolean isMoving() {
+		return velocity != 0;
+	}
+
 	abstract protected void behave(final double velocity);
 }
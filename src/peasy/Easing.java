@@ -0,0 +1,164 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * The pace of an animated transition: maps the fraction of its time elapsed,
+ * from 0 to 1, to the fraction of the way travelled, which starts at 0 and
+ * ends at 1 but may overshoot in between.
+ *
+ * <p>
+ * To use your own curve, subclass Easing and pass it through
+ * {@link #sampled(Easing)}, so that however costly the curve is, it is
+ * evaluated only while building a table, and each frame costs one lookup.
+ *
+ * @see CameraModel#setEasing(Easing)
+ */
+abstract public class Easing {
+	// samples in a table, not counting the one at t = 1
+	private static final int TABLE_SIZE = 256;
+
+	public static final Easing LINEAR = new Easing() {
+		@Override
+		public double ease(final double t) {
+			return t;
+		}
+	};
+
+	/**
+	 * Smoothstep, the curve of
+	 * {@link InterpolationUtil#smooth(double, double, double)}.
+	 */
+	public static final Easing SMOOTHSTEP = new Easing() {
+		@Override
+		public double ease(final double t) {
+			return t * t * (3 - 2 * t);
+		}
+	};
+
+	abstract public double ease(final double t);
+
+	/**
+	 * Tabulate the given curve at 257 evenly spaced points, and return an
+	 * easing which interpolates linearly between them.
+	 */
+	public static Easing sampled(final Easing curve) {
+		final float[] table = new float[TABLE_SIZE + 1];
+		for (int i = 0; i <= TABLE_SIZE; i++) {
+			table[i] = (float)curve.ease((double)i / TABLE_SIZE);
+		}
+		return new Easing() {
+			@Override
+			public double ease(final double t) {
+				final double f = Math.min(Math.max(t, 0), 1) * TABLE_SIZE;
+				final int i = Math.min((int)f, TABLE_SIZE - 1);
+				return table[i] + (table[i + 1] - table[i]) * (f - i);
+			}
+		};
+	}
+
+	/**
+	 * A cubic Bezier timing curve from (0, 0) to (1, 1), with control points
+	 * (x1, y1) and (x2, y2), as in CSS transitions. The curve is solved for
+	 * each table sample when it is built.
+	 *
+	 * @param x1
+	 *            from 0 to 1
+	 * @param x2
+	 *            from 0 to 1
+	 */
+	public static Easing cubicBezier(final double x1, final double y1,
+			final double x2, final double y2) {
+		if (x1 < 0 || x1 > 1 || x2 < 0 || x2 > 1) {
+			throw new IllegalArgumentException(
+					"Bezier easing control points must have x between 0 and 1.");
+		}
+		return sampled(new Easing() {
+			@Override
+			public double ease(final double x) {
+				return bezier(y1, y2, solve(x1, x2, x));
+			}
+		});
+	}
+
+	/**
+	 * A spring, which shoots past its end and settles back.
+	 *
+	 * @param oscillations
+	 *            how many times it swings about the end, over the transition
+	 * @param damping
+	 *            how quickly the swinging dies down; 5 or so settles well
+	 *            before the end
+	 */
+	public static Easing spring(final double oscillations, final double damping) {
+		final double omega = 2 * Math.PI * oscillations;
+		final Easing raw = new Easing() {
+			@Override
+			public double ease(final double t) {
+				return 1 - Math.exp(-damping * t)
+						* (Math.cos(omega * t) + damping / omega * Math.sin(omega * t));
+			}
+		};
+		// scaled to finish at exactly 1
+		final double end = raw.ease(1);
+		return sampled(new Easing() {
+			@Override
+			public double ease(final double t) {
+				return raw.ease(t) / end;
+			}
+		});
+	}
+
+	private static double bezier(final double p1, final double p2, final double t) {
+		final double u = 1 - t;
+		return 3 * u * u * t * p1 + 3 * u * t * t * p2 + t * t * t;
+	}
+
+	/**
+	 * Find the curve parameter at which the Bezier's x is the given value, by
+	 * Newton's method, falling back to bisection where the slope is flat.
+	 */
+	private static double solve(final double x1, final double x2, final double x) {
+		double t = x;
+		for (int i = 0; i < 8; i++) {
+			final double error = bezier(x1, x2, t) - x;
+			final double u = 1 - t;
+			final double slope = 3 * u * u * x1 + 6 * u * t * (x2 - x1) + 3 * t * t
+					* (1 - x2);
+			if (Math.abs(error) < 1e-9) {
+				return t;
+			}
+			if (Math.abs(slope) < 1e-6) {
+				break;
+			}
+			t -= error / slope;
+		}
+		double lo = 0, hi = 1;
+		t = x;
+		for (int i = 0; i < 64; i++) {
+			if (bezier(x1, x2, t) < x) {
+				lo = t;
+			} else {
+				hi = t;
+			}
+			t = (lo + hi) / 2;
+		}
+		return t;
+	}
+}
@@ -0,0 +1,235 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * Runs a camera's animated transitions. There is one slot each for rotation,
+ * center and distance, and one for a {@link CameraPath}, which drives all
+ * three; they are allocated with the camera. Starting a transition overwrites
+ * its slot in place, and all running slots are advanced together by the
+ * camera's update. Starting one on a camera at rest wakes the camera; for a
+ * PeasyCam, that just puts it on its sketch's list of cameras to update,
+ * without registering anything with Processing.
+ */
+final class InterpolationScheduler {
+	private final CameraModel model;
+
+	final RotationSlot rotation = new RotationSlot();
+	final CenterSlot center = new CenterSlot();
+	final DistanceSlot distance = new DistanceSlot();
+	final PathSlot path = new PathSlot();
+
+	InterpolationScheduler(final CameraModel model) {
+		this.model = model;
+	}
+
+	boolean isRunning() {
+		return rotation.isRunning() || center.isRunning() || distance.isRunning()
+				|| path.isRunning();
+	}
+
+	void cancel() {
+		rotation.cancel();
+		center.cancel();
+		distance.cancel();
+		path.cancel();
+	}
+
+	/**
+	 * Advance every running slot to the given time.
+	 */
+	void update(final long now) {
+		rotation.update(now);
+		center.update(now);
+		distance.update(now);
+		path.update(now);
+	}
+
+	abstract class Slot {
+		long startTime;
+		double durationNanos;
+		boolean running = false;
+		private Easing easing;
+
+		void start(final long timeInMillis) {
+			final Easing e = model.getEasing();
+			easing = e != null ? e : defaultEasing();
+			startTime = model.now();
+			durationNanos = timeInMillis * 1e6;
+			running = true;
+			model.wake();
+		}
+
+		void cancel() {
+			running = false;
+		}
+
+		boolean isRunning() {
+			return running;
+		}
+
+		void update(final long now) {
+			if (!running) {
+				return;
+			}
+			final double t = (now - startTime) / durationNanos;
+			if (t <= .99) {
+				interp(easing.ease(t));
+			} else {
+				setEndState();
+				running = false;
+			}
+			model.cameraChanged();
+		}
+
+		/**
+		 * The easing used when the camera doesn't specify one.
+		 */
+		abstract Easing defaultEasing();
+
+		abstract void interp(double t);
+
+		abstract void setEndState();
+	}
+
+	final class RotationSlot extends Slot {
+		private final MutableRotation start = new MutableRotation();
+		private final MutableRotation end = new MutableRotation();
+		private RotationBlend blend;
+
+		void start(final double q0, final double q1, final double q2, final double q3,
+				final RotationBlend blend, final long timeInMillis) {
+			this.blend = blend;
+			start.set(model.rotation());
+			end.set(q0, q1, q2, q3);
+			model.stopRotating();
+			path.cancel();
+			start(timeInMillis);
+		}
+
+		@Override
+		Easing defaultEasing() {
+			return Easing.LINEAR;
+		}
+
+		@Override
+		void interp(final double t) {
+			blend.blend(start, end, t, model.rotation());
+		}
+
+		@Override
+		void setEndState() {
+			model.rotation().set(end);
+		}
+	}
+
+	final class CenterSlot extends Slot {
+		private final MutableVector3D start = new MutableVector3D();
+		private final MutableVector3D end = new MutableVector3D();
+
+		void start(final double x, final double y, final double z,
+				final long timeInMillis) {
+			start.set(model.center());
+			end.set(x, y, z);
+			path.cancel();
+			start(timeInMillis);
+		}
+
+		@Override
+		Easing defaultEasing() {
+			return Easing.SMOOTHSTEP;
+		}
+
+		@Override
+		void interp(final double t) {
+			InterpolationUtil.linear(start, end, t, model.center());
+		}
+
+		@Override
+		void setEndState() {
+			model.center().set(end);
+		}
+	}
+
+	final class DistanceSlot extends Slot {
+		private double start;
+		private double end;
+
+		void start(final double distance, final long timeInMillis) {
+			start = model.getDistance();
+			end = distance;
+			path.cancel();
+			start(timeInMillis);
+		}
+
+		@Override
+		Easing defaultEasing() {
+			return Easing.SMOOTHSTEP;
+		}
+
+		@Override
+		void interp(final double t) {
+			// easings may overshoot, past the distance limits
+			model.distance(model.clampDistance(InterpolationUtil.linear(start, end, t)));
+		}
+
+		@Override
+		void setEndState() {
+			model.distance(end);
+		}
+	}
+
+	final class PathSlot extends Slot {
+		private CameraPath current;
+		private RotationBlend blend;
+
+		void start(final CameraPath path, final RotationBlend blend,
+				final long timeInMillis) {
+			current = path;
+			this.blend = blend;
+			rotation.cancel();
+			center.cancel();
+			distance.cancel();
+			model.stopRotating();
+			start(timeInMillis);
+		}
+
+		@Override
+		void cancel() {
+			super.cancel();
+			current = null;
+		}
+
+		@Override
+		Easing defaultEasing() {
+			return Easing.LINEAR;
+		}
+
+		@Override
+		void interp(final double t) {
+			model.distance(model.clampDistance(current.evaluate(t, blend,
+					model.rotation(), model.center())));
+		}
+
+		@Override
+		void setEndState() {
+			interp(1);
+		}
+	}
+}
@@ -22,20 +22,44 @@ import peasy.org.apache.commons.math.geometry.Rotation;
 import peasy.org.apache.commons.math.geometry.Vector3D;
 
 public class InterpolationUtil {
+	// Jonathan Blow's correction for normalized lerp, from "Hacking Quaternions"
+	private static final double ATTENUATION = 0.82279687;
+	private static final double WORST_CASE_SLOPE = 0.58549219;
 
 	// Thanks to Michael Kaufmann <mail@michael-kaufmann.ch> for improvements to this function.
 	static public Rotation slerp(final Rotation a, final Rotation b, final double t) {
-		final double a0 = a.getQ0(), a1 = a.getQ1(), a2 = a.getQ2(), a3 = a.getQ3();
-		double b0 = b.getQ0(), b1 = b.getQ1(), b2 = b.getQ2(), b3 = b.getQ3();
-
-		double cosTheta = a0 * b0 + a1 * b1 + a2 * b2 + a3 * b3;
-		if (cosTheta < 0) {
-			b0 = -b0;
-			b1 = -b1;
-			b2 = -b2;
-			b3 = -b3;
-			cosTheta = -cosTheta;
+		return slerp(a.getQ0(), a.getQ1(), a.getQ2(), a.getQ3(), b.getQ0(), b.getQ1(),
+				b.getQ2(), b.getQ3(), t, new MutableRotation()).toRotation();
+	}
+
+	/**
+	 * Allocation-free slerp; out may be the same instance as a or b.
+	 */
+	static public MutableRotation slerp(final MutableRotation a,
+			final MutableRotation b, final double t, final MutableRotation out) {
+		return slerp(a.getQ0(), a.getQ1(), a.getQ2(), a.getQ3(), b.getQ0(), b.getQ1(),
+				b.getQ2(), b.getQ3(), t, out);
+	}
+
+	static MutableRotation slerp(final double a0, final double a1, final double a2,
+			final double a3, final double b0, final double b1, final double b2,
+			final double b3, final double t, final MutableRotation out) {
+		if (a0 * b0 + a1 * b1 + a2 * b2 + a3 * b3 < 0) {
+			return slerpArc(a0, a1, a2, a3, -b0, -b1, -b2, -b3, t, out);
 		}
+		return slerpArc(a0, a1, a2, a3, b0, b1, b2, b3, t, out);
+	}
+
+	/**
+	 * Slerp along the great arc from quaternion a to quaternion b as given,
+	 * even when -b, which is the same rotation, is nearer; spline schemes such
+	 * as SQUAD need this to stay continuous.
+	 */
+	static MutableRotation slerpArc(final double a0, final double a1,
+			final double a2, final double a3, final double b0, final double b1,
+			final double b2, final double b3, final double t, final MutableRotation out) {
+		final double cosTheta = Math.max(-1, Math.min(1, a0 * b0 + a1 * b1 + a2 * b2
+				+ a3 * b3));
 
 		final double theta = Math.acos(cosTheta);
 		final double sinTheta = Math.sqrt(1.0 - cosTheta * cosTheta);
@@ -48,8 +72,46 @@ public class InterpolationUtil {
 			w1 = 1.0 - t;
 			w2 = t;
 		}
-		return new Rotation(w1 * a0 + w2 * b0, w1 * a1 + w2 * b1, w1 * a2 + w2 * b2, w1
-				* a3 + w2 * b3, true);
+		return out.setNormalized(w1 * a0 + w2 * b0, w1 * a1 + w2 * b1, w1 * a2 + w2
+				* b2, w1 * a3 + w2 * b3);
+	}
+
+	/**
+	 * An approximation of {@link #slerp(MutableRotation, MutableRotation, double, MutableRotation)}
+	 * which costs one square root instead of four transcendental functions: a
+	 * normalized linear blend, with t corrected by a cubic so that the angular
+	 * velocity is nearly constant. The result is within a thousandth of a
+	 * radian of slerp's for rotations up to a quarter turn apart, and a few
+	 * hundredths for rotations nearly opposite.
+	 */
+	static public MutableRotation fastSlerp(final MutableRotation a,
+			final MutableRotation b, final double t, final MutableRotation out) {
+		return fastSlerp(a.getQ0(), a.getQ1(), a.getQ2(), a.getQ3(), b.getQ0(),
+				b.getQ1(), b.getQ2(), b.getQ3(), t, out);
+	}
+
+	static MutableRotation fastSlerp(final double a0, final double a1,
+			final double a2, final double a3, final double b0, final double b1,
+			final double b2, final double b3, final double t, final MutableRotation out) {
+		if (a0 * b0 + a1 * b1 + a2 * b2 + a3 * b3 < 0) {
+			return fastSlerpArc(a0, a1, a2, a3, -b0, -b1, -b2, -b3, t, out);
+		}
+		return fastSlerpArc(a0, a1, a2, a3, b0, b1, b2, b3, t, out);
+	}
+
+	/**
+	 * As {@link #slerpArc(double, double, double, double, double, double, double, double, double, MutableRotation)},
+	 * approximated as {@link #fastSlerp(MutableRotation, MutableRotation, double, MutableRotation)} is.
+	 */
+	static MutableRotation fastSlerpArc(final double a0, final double a1,
+			final double a2, final double a3, final double b0, final double b1,
+			final double b2, final double b3, final double t, final MutableRotation out) {
+		final double cosTheta = a0 * b0 + a1 * b1 + a2 * b2 + a3 * b3;
+		final double factor = 1 - ATTENUATION * Math.abs(cosTheta);
+		final double k = WORST_CASE_SLOPE * factor * factor;
+		final double u = t * (k * t * (2 * t - 3) + 1 + k);
+		return out.setNormalized(a0 + (b0 - a0) * u, a1 + (b1 - a1) * u, a2
+				+ (b2 - a2) * u, a3 + (b3 - a3) * u);
 	}
 
 	static public double smooth(final double a, final double b, final double t) {
@@ -63,6 +125,12 @@ public class InterpolationUtil {
 				smooth(a.getZ(), b.getZ(), t));
 	}
 
+	static public MutableVector3D smooth(final MutableVector3D a,
+			final MutableVector3D b, final double t, final MutableVector3D out) {
+		return out.set(smooth(a.getX(), b.getX(), t), smooth(a.getY(), b.getY(), t),
+				smooth(a.getZ(), b.getZ(), t));
+	}
+
 	static public double linear(final double a, final double b, final double t) {
 		return a + (b - a) * t;
 	}
@@ -71,4 +139,10 @@ public class InterpolationUtil {
 		return new Vector3D(linear(a.getX(), b.getX(), t), linear(a.getY(), b.getY(), t),
 				linear(a.getZ(), b.getZ(), t));
 	}
+
+	static public MutableVector3D linear(final MutableVector3D a,
+			final MutableVector3D b, final double t, final MutableVector3D out) {
+		return out.set(linear(a.getX(), b.getX(), t), linear(a.getY(), b.getY(), t),
+				linear(a.getZ(), b.getZ(), t));
+	}
 }
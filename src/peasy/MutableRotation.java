@@ -0,0 +1,258 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import peasy.org.apache.commons.math.geometry.Rotation;
+import peasy.org.apache.commons.math.geometry.RotationOrder;
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * A reusable counterpart to {@link Rotation}. It uses the same quaternion
+ * conventions, but every operation writes into an existing instance instead of
+ * building a new one, so the camera can update itself every frame without
+ * allocating.
+ *
+ * @see Rotation
+ * @see MutableVector3D
+ */
+public class MutableRotation {
+	private double q0, q1, q2, q3;
+
+	/**
+	 * Build the identity rotation.
+	 */
+	public MutableRotation() {
+		q0 = 1;
+	}
+
+	public MutableRotation(final Rotation r) {
+		set(r);
+	}
+
+	public MutableRotation set(final double q0, final double q1, final double q2,
+			final double q3) {
+		this.q0 = q0;
+		this.q1 = q1;
+		this.q2 = q2;
+		this.q3 = q3;
+		return this;
+	}
+
+	public MutableRotation set(final Rotation r) {
+		return set(r.getQ0(), r.getQ1(), r.getQ2(), r.getQ3());
+	}
+
+	public MutableRotation set(final MutableRotation r) {
+		return set(r.q0, r.q1, r.q2, r.q3);
+	}
+
+	public MutableRotation setIdentity() {
+		return set(1, 0, 0, 0);
+	}
+
+	/**
+	 * Set this rotation from a quaternion which is not necessarily normalized.
+	 */
+	public MutableRotation setNormalized(final double q0, final double q1,
+			final double q2, final double q3) {
+		final double inv = 1.0 / Math.sqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+		return set(q0 * inv, q1 * inv, q2 * inv, q3 * inv);
+	}
+
+	public double getQ0() {
+		return q0;
+	}
+
+	public double getQ1() {
+		return q1;
+	}
+
+	public double getQ2() {
+		return q2;
+	}
+
+	public double getQ3() {
+		return q3;
+	}
+
+	/**
+	 * @return a new immutable {@link Rotation} with the same value
+	 */
+	public Rotation toRotation() {
+		return new Rotation(q0, q1, q2, q3, false);
+	}
+
+	/**
+	 * In-place equivalent of
+	 * <code>this = this.applyTo(new Rotation(axis, angle))</code>, for a
+	 * normalized axis.
+	 */
+	public MutableRotation applyToAxisAngle(final double ax, final double ay,
+			final double az, final double angle) {
+		final double halfAngle = -0.5 * angle;
+		final double s = Math.sin(halfAngle);
+		return applyTo(Math.cos(halfAngle), s * ax, s * ay, s * az);
+	}
+
+	/**
+	 * In-place equivalent of <code>this = this.applyTo(r)</code>.
+	 */
+	public MutableRotation applyTo(final MutableRotation r) {
+		return applyTo(r.q0, r.q1, r.q2, r.q3);
+	}
+
+	/**
+	 * In-place equivalent of <code>this = this.applyTo(r)</code>, where r is
+	 * given by its quaternion coordinates.
+	 */
+	public MutableRotation applyTo(final double r0, final double r1, final double r2,
+			final double r3) {
+		return set(r0 * q0 - (r1 * q1 + r2 * q2 + r3 * q3), //
+				r1 * q0 + r0 * q1 + (r2 * q3 - r3 * q2), //
+				r2 * q0 + r0 * q2 + (r3 * q1 - r1 * q3), //
+				r3 * q0 + r0 * q3 + (r1 * q2 - r2 * q1));
+	}
+
+	/**
+	 * Apply the rotation to the vector (x, y, z), storing the image in out.
+	 *
+	 * @return out
+	 */
+	public MutableVector3D applyTo(final double x, final double y, final double z,
+			final MutableVector3D out) {
+		final double s = q1 * x + q2 * y + q3 * z;
+		return out.set(2 * (q0 * (x * q0 - (q2 * z - q3 * y)) + s * q1) - x, //
+				2 * (q0 * (y * q0 - (q3 * x - q1 * z)) + s * q2) - y, //
+				2 * (q0 * (z * q0 - (q1 * y - q2 * x)) + s * q3) - z);
+	}
+
+	public MutableVector3D applyTo(final MutableVector3D u, final MutableVector3D out) {
+		return applyTo(u.getX(), u.getY(), u.getZ(), out);
+	}
+
+	/**
+	 * Apply the inverse of the rotation to the vector (x, y, z), storing the
+	 * result in out.
+	 *
+	 * @return out
+	 */
+	public MutableVector3D applyInverseTo(final double x, final double y,
+			final double z, final MutableVector3D out) {
+		final double s = q1 * x + q2 * y + q3 * z;
+		final double m0 = -q0;
+		return out.set(2 * (m0 * (x * m0 - (q2 * z - q3 * y)) + s * q1) - x, //
+				2 * (m0 * (y * m0 - (q3 * x - q1 * z)) + s * q2) - y, //
+				2 * (m0 * (z * m0 - (q1 * y - q2 * x)) + s * q3) - z);
+	}
+
+	/**
+	 * Get the Cardan or Euler angles corresponding to this rotation, as
+	 * {@link Rotation#getAngles(RotationOrder)} does, but without throwing or
+	 * allocating.
+	 * 
+	 * @param order
+	 *            rotation order to use
+	 * @param angles
+	 *            receives the three angles, in the order specified by the set
+	 * @return false, leaving angles untouched, if this rotation is singular
+	 *         with respect to the angles set specified
+	 */
+	public boolean getAngles(final RotationOrder order, final double[] angles) {
+		// v1 is the image of the last axis, v2 the inverse image of the first
+		final Vector3D a1 = order.getA1();
+		final Vector3D a3 = order.getA3();
+
+		double x = a3.getX(), y = a3.getY(), z = a3.getZ();
+		double s = q1 * x + q2 * y + q3 * z;
+		final double v1x = 2 * (q0 * (x * q0 - (q2 * z - q3 * y)) + s * q1) - x;
+		final double v1y = 2 * (q0 * (y * q0 - (q3 * x - q1 * z)) + s * q2) - y;
+		final double v1z = 2 * (q0 * (z * q0 - (q1 * y - q2 * x)) + s * q3) - z;
+
+		x = a1.getX();
+		y = a1.getY();
+		z = a1.getZ();
+		s = q1 * x + q2 * y + q3 * z;
+		final double m0 = -q0;
+		final double v2x = 2 * (m0 * (x * m0 - (q2 * z - q3 * y)) + s * q1) - x;
+		final double v2y = 2 * (m0 * (y * m0 - (q3 * x - q1 * z)) + s * q2) - y;
+		final double v2z = 2 * (m0 * (z * m0 - (q1 * y - q2 * x)) + s * q3) - z;
+
+		// the singularity test is on the component of v2 along the last axis
+		final double c = v2x * a3.getX() + v2y * a3.getY() + v2z * a3.getZ();
+		if ((c < -0.9999999999) || (c > 0.9999999999)) {
+			return false;
+		}
+
+		if (order == RotationOrder.XYZ) {
+			angles[0] = Math.atan2(-v1y, v1z);
+			angles[1] = Math.asin(v2z);
+			angles[2] = Math.atan2(-v2y, v2x);
+		} else if (order == RotationOrder.XZY) {
+			angles[0] = Math.atan2(v1z, v1y);
+			angles[1] = -Math.asin(v2y);
+			angles[2] = Math.atan2(v2z, v2x);
+		} else if (order == RotationOrder.YXZ) {
+			angles[0] = Math.atan2(v1x, v1z);
+			angles[1] = -Math.asin(v2z);
+			angles[2] = Math.atan2(v2x, v2y);
+		} else if (order == RotationOrder.YZX) {
+			angles[0] = Math.atan2(-v1z, v1x);
+			angles[1] = Math.asin(v2x);
+			angles[2] = Math.atan2(-v2z, v2y);
+		} else if (order == RotationOrder.ZXY) {
+			angles[0] = Math.atan2(-v1x, v1y);
+			angles[1] = Math.asin(v2y);
+			angles[2] = Math.atan2(-v2x, v2z);
+		} else if (order == RotationOrder.ZYX) {
+			angles[0] = Math.atan2(v1y, v1x);
+			angles[1] = -Math.asin(v2x);
+			angles[2] = Math.atan2(v2y, v2z);
+		} else if (order == RotationOrder.XYX) {
+			angles[0] = Math.atan2(v1y, -v1z);
+			angles[1] = Math.acos(v2x);
+			angles[2] = Math.atan2(v2y, v2z);
+		} else if (order == RotationOrder.XZX) {
+			angles[0] = Math.atan2(v1z, v1y);
+			angles[1] = Math.acos(v2x);
+			angles[2] = Math.atan2(v2z, -v2y);
+		} else if (order == RotationOrder.YXY) {
+			angles[0] = Math.atan2(v1x, v1z);
+			angles[1] = Math.acos(v2y);
+			angles[2] = Math.atan2(v2x, -v2z);
+		} else if (order == RotationOrder.YZY) {
+			angles[0] = Math.atan2(v1z, -v1x);
+			angles[1] = Math.acos(v2y);
+			angles[2] = Math.atan2(v2z, v2x);
+		} else if (order == RotationOrder.ZXZ) {
+			angles[0] = Math.atan2(v1x, -v1y);
+			angles[1] = Math.acos(v2z);
+			angles[2] = Math.atan2(v2x, v2y);
+		} else { // last possibility is ZYZ
+			angles[0] = Math.atan2(v1y, v1x);
+			angles[1] = Math.acos(v2z);
+			angles[2] = Math.atan2(v2y, -v2x);
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + q0 + ", " + q1 + ", " + q2 + ", " + q3 + "]";
+	}
+}
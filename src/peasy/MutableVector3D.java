@@ -0,0 +1,99 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import peasy.org.apache.commons.math.geometry.Vector3D;
+
+/**
+ * A reusable counterpart to {@link Vector3D}, updated in place.
+ *
+ * @see Vector3D
+ * @see MutableRotation
+ */
+public class MutableVector3D {
+	private double x, y, z;
+
+	public MutableVector3D() {
+	}
+
+	public MutableVector3D(final double x, final double y, final double z) {
+		set(x, y, z);
+	}
+
+	public MutableVector3D(final Vector3D v) {
+		set(v);
+	}
+
+	public MutableVector3D set(final double x, final double y, final double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	public MutableVector3D set(final Vector3D v) {
+		return set(v.getX(), v.getY(), v.getZ());
+	}
+
+	public MutableVector3D set(final MutableVector3D v) {
+		return set(v.x, v.y, v.z);
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public double getZ() {
+		return z;
+	}
+
+	public MutableVector3D add(final double dx, final double dy, final double dz) {
+		x += dx;
+		y += dy;
+		z += dz;
+		return this;
+	}
+
+	public MutableVector3D add(final MutableVector3D v) {
+		return add(v.x, v.y, v.z);
+	}
+
+	public MutableVector3D scalarMultiply(final double a) {
+		x *= a;
+		y *= a;
+		z *= a;
+		return this;
+	}
+
+	/**
+	 * @return a new immutable {@link Vector3D} with the same value
+	 */
+	public Vector3D toVector3D() {
+		return new Vector3D(x, y, z);
+	}
+
+	@Override
+	public String toString() {
+		return "(" + x + ", " + y + ", " + z + ")";
+	}
+}
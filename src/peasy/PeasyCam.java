@@ -18,15 +18,17 @@
  */
 package peasy;
 
-import peasy.org.apache.commons.math.geometry.CardanEulerSingularityException;
+import java.io.File;
+import java.io.IOException;
+
 import peasy.org.apache.commons.math.geometry.Rotation;
-import peasy.org.apache.commons.math.geometry.RotationOrder;
 import peasy.org.apache.commons.math.geometry.Vector3D;
 import processing.core.PApplet;
 import processing.core.PConstants;
 import processing.core.PGraphics;
 import processing.event.KeyEvent;
 import processing.event.MouseEvent;
+import processing.opengl.PGL;
 import processing.opengl.PGraphicsOpenGL;
 
 /**
@@ -41,43 +43,21 @@ public class PeasyCam {
 	
 	private static final Vector3D LOOK = Vector3D.plusK;
 	private static final Vector3D UP = Vector3D.plusJ;
-	private static final double SMALLEST_MINIMUM_DISTANCE = 0.01;
-
-	private static enum Constraint {
-		YAW, PITCH, ROLL, SUPPRESS_ROLL
-	}
 
 	private final PGraphics g;
 	private final PApplet p;
 
-	private final double startDistance;
-	private final Vector3D startCenter;
+	// rotation, center, distance and everything that moves them
+	private final CameraModel model;
 
 	private boolean resetOnDoubleClick = true;
-	private double minimumDistance = 1;
-	private double maximumDistance = Double.MAX_VALUE;
-
-	private final DampedAction rotateX, rotateY, rotateZ, dampedZoom, dampedPanX,
-			dampedPanY;
-
-	private double distance;
-	private Vector3D center;
-	private Rotation rotation;
 
 	// viewport for the mouse-pointer [x,y,w,h]
 	private int[] viewport = new int[4];
 
-	private Constraint dragConstraint = null;
-	private Constraint permaConstraint = null;
-
-	private final InterpolationManager rotationInterps = new InterpolationManager();
-	private final InterpolationManager centerInterps = new InterpolationManager();
-	private final InterpolationManager distanceInterps = new InterpolationManager();
-
 	private final PeasyDragHandler panHandler /* ha ha ha */ = new PeasyDragHandler() {
 		public void handleDrag(final double dx, final double dy) {
-			dampedPanX.impulse(dx / 8.);
-			dampedPanY.impulse(dy / 8.);
+			model.dragPan(dx, dy);
 		}
 	};
 	private PeasyDragHandler centerDragHandler = panHandler;
@@ -91,23 +71,42 @@ public class PeasyCam {
 
 	private final PeasyDragHandler zoomHandler = new PeasyDragHandler() {
 		public void handleDrag(final double dx, final double dy) {
-			dampedZoom.impulse(dy / 10.0);
+			model.dragZoom(dy);
 		}
 	};
 	private PeasyDragHandler rightDraghandler = zoomHandler;
 
 	private final PeasyWheelHandler zoomWheelHandler = new PeasyWheelHandler() {
 		public void handleWheel(final int delta) {
-			dampedZoom.impulse(wheelScale * delta);
+			model.wheelZoom(wheelScale * delta);
 		}
 	};
 	private PeasyWheelHandler wheelHandler = zoomWheelHandler;
 	private double wheelScale = 1.0;
 
-	private final PeasyEventListener peasyEventListener = new PeasyEventListener();
+	private boolean directFeed = false;
+	// when set, only apply() and beginView() touch the canvas
+	private boolean explicitApply = false;
+
+	final PeasyEventListener peasyEventListener = new PeasyEventListener();
+	private final PointerVelocity pointerVelocity = new PointerVelocity();
 	private boolean isActive = false;
 
+	// the sketch's one draw hook, which updates the camera while it's awake
+	private final PeasyDrawDispatcher draws;
+	// whether the camera is updated every frame; it sleeps when at rest
+	private boolean awake = false;
+	// whether the draw dispatcher has the camera on its list, which it may
+	// still, until the end of the frame, after the camera goes to sleep
+	boolean listed = false;
+	// whether the draw dispatcher checks this camera's command queue
+	boolean watched = false;
 
+	private CameraRecorder recorder = null;
+	// whether the recorder was made by record(), to be closed by the camera
+	private boolean ownsRecorder = false;
+
+	private final CameraSnapshot snapshot = new CameraSnapshot();
 
 	public PeasyCam(final PApplet parent, final double distance) {
 		this(parent, parent.g, 0, 0, 0, distance);
@@ -126,10 +125,20 @@ public class PeasyCam {
 			final double lookAtY, final double lookAtZ, final double distance) {
 		this.p = parent;
 		this.g = pg;
-		this.startCenter = this.center = new Vector3D(lookAtX, lookAtY, lookAtZ);
-		this.startDistance = this.distance = Math.max(distance,
-				SMALLEST_MINIMUM_DISTANCE);
-		this.rotation = new Rotation();
+		this.draws = PeasyDrawDispatcher.get(parent);
+		this.model = new CameraModel(lookAtX, lookAtY, lookAtZ, distance);
+		model.addListener(new CameraListener() {
+			public void cameraChanged(final CameraModel model) {
+				if (!explicitApply) {
+					feed();
+				}
+				snapshot.publish(model);
+			}
+
+			public void cameraStarted(final CameraModel model) {
+				wake();
+			}
+		});
 
 		viewport[0] = 0;
 		viewport[1] = 0;
@@ -137,63 +146,28 @@ public class PeasyCam {
 		viewport[3] = pg.height;
 
 		feed();
-
-		rotateX = new DampedAction(this) {
-			@Override
-			protected void behave(final double velocity) {
-				rotation = rotation.applyTo(new Rotation(Vector3D.plusI, velocity));
-			}
-		};
-
-		rotateY = new DampedAction(this) {
-			@Override
-			protected void behave(final double velocity) {
-				rotation = rotation.applyTo(new Rotation(Vector3D.plusJ, velocity));
-			}
-		};
-
-		rotateZ = new DampedAction(this) {
-			@Override
-			protected void behave(final double velocity) {
-				rotation = rotation.applyTo(new Rotation(Vector3D.plusK, velocity));
-			}
-		};
-
-		dampedZoom = new DampedAction(this) {
-			@Override
-			protected void behave(final double velocity) {
-				mouseZoom(velocity);
-			}
-		};
-
-		dampedPanX = new DampedAction(this) {
-			@Override
-			protected void behave(final double velocity) {
-				mousePan(velocity, 0);
-			}
-		};
-
-		dampedPanY = new DampedAction(this) {
-			@Override
-			protected void behave(final double velocity) {
-				mousePan(0, velocity);
-			}
-		};
+		snapshot.publish(model);
 
 		setActive(true);
 	}
 
+	/**
+	 * The camera's state and motion, independent of any sketch.
+	 */
+	public CameraModel getModel() {
+		return model;
+	}
+
 	public void setActive(final boolean active) {
 		if (active == isActive) {
 			return;
 		}
 		isActive = active;
+		// one dispatcher per sketch routes each event to the camera it's for
 		if (isActive) {
-			p.registerMethod("mouseEvent", peasyEventListener);
-			p.registerMethod("keyEvent", peasyEventListener);
+			PeasyEventDispatcher.get(p).add(p, this);
 		} else {
-			p.unregisterMethod("mouseEvent", peasyEventListener);
-			p.unregisterMethod("keyEvent", peasyEventListener);
+			PeasyEventDispatcher.get(p).remove(p, this);
 		}
 	}
 
@@ -286,8 +260,15 @@ public class PeasyCam {
 		viewport[1] = y;
 		viewport[2] = w;
 		viewport[3] = h;
+		if (isActive) {
+			PeasyEventDispatcher.get(p).invalidate();
+		}
 	}
 
+	/**
+	 * Change the viewport with {@link #setViewport(int, int, int, int)}, not
+	 * through this array, so that mouse events follow it.
+	 */
 	public int[] getViewport() {
 		return viewport;
 	}
@@ -302,60 +283,207 @@ public class PeasyCam {
 		return (x > x0) && (x < x1) && (y > y0) && (y < y1);
 	}
 
+	/**
+	 * Advance the camera by the time elapsed since the previous update, and
+	 * feed it once if anything changed.
+	 */
+	void update() {
+		if (model.update()) {
+			if (!explicitApply) {
+				feed();
+			}
+			snapshot.publish(model);
+		}
+		if (recorder != null) {
+			if (recorder.isClosed()) {
+				recorder = null;
+				ownsRecorder = false;
+			} else {
+				recorder.record(model);
+			}
+		}
+		if (recorder == null && !model.isMoving()) {
+			sleep();
+		}
+	}
+
+	/**
+	 * A queue through which other threads can drive this camera; see
+	 * {@link CameraCommandQueue}. Call this from the sketch's thread, in
+	 * setup() say, and hand the queue to the others. From then on, a command
+	 * queued while the camera is at rest wakes it at the next frame.
+	 */
+	public CameraCommandQueue getCommandQueue() {
+		final CameraCommandQueue commands = model.getCommandQueue();
+		draws.watch(this);
+		return commands;
+	}
+
+	/**
+	 * Wake up if at rest with commands queued. Called every frame, once this
+	 * camera has a command queue.
+	 */
+	void checkCommands() {
+		if (!awake && model.hasPendingCommands()) {
+			model.wake();
+			wake();
+		}
+	}
+
+	/**
+	 * Record this camera's state every frame with the given recorder, or stop
+	 * recording, given null. While recording, the camera doesn't sleep. The
+	 * recorder is not closed here; once it is closed, the camera stops
+	 * recording and lets go of it.
+	 */
+	public void setRecorder(final CameraRecorder recorder) {
+		closeOwnRecorder();
+		this.recorder = recorder;
+		if (recorder != null) {
+			wake();
+		}
+	}
+
+	/**
+	 * Record this camera's state every frame to the given file, with a
+	 * recorder of the camera's own. The camera closes it when recording
+	 * stops, by {@link #setRecorder(CameraRecorder)} or another record(), and
+	 * when the sketch is disposed.
+	 *
+	 * @return the recorder, which may also be closed directly
+	 */
+	public CameraRecorder record(final File file) throws IOException {
+		final CameraRecorder recorder = new CameraRecorder(file);
+		setRecorder(recorder);
+		ownsRecorder = true;
+		return recorder;
+	}
+
+	/**
+	 * Close the recorder made by {@link #record(File)}, if it's still in use.
+	 * Called by setRecorder(), and when the sketch is disposed.
+	 */
+	void closeOwnRecorder() {
+		final CameraRecorder own = ownsRecorder ? recorder : null;
+		ownsRecorder = false;
+		if (own != null) {
+			recorder = null;
+			try {
+				own.close();
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	public CameraRecorder getRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * The camera's state, published every frame in which it changes, for
+	 * threads other than the animation thread to read. Other threads should
+	 * read the camera only through this.
+	 */
+	public CameraSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Have the sketch's draw hook update the camera every frame.
+	 */
+	private void wake() {
+		if (!awake) {
+			awake = true;
+			draws.wake(this);
+		}
+	}
+
+	private void sleep() {
+		awake = false;
+	}
+
+	/**
+	 * @return true if the camera is at rest, and costs nothing per frame
+	 */
+	public boolean isSleeping() {
+		return !awake;
+	}
+
+	/**
+	 * A number which increases whenever the camera's rotation, center or
+	 * distance changes, so that callers can cache what they derive from them.
+	 */
+	public long getStateVersion() {
+		return model.getStateVersion();
+	}
+
+	/**
+	 * How many calls to {@link #feed()} have been saved by feeding only once
+	 * per frame, since this camera was created.
+	 */
+	public long getElidedFeedCount() {
+		return model.getCoalescedChangeCount();
+	}
+
 	protected class PeasyEventListener {
 
 		public boolean isActive = false;
 
+		// the pointer as of the last event, and the button pressed
+		private int pointerX, pointerY;
+		private int button;
+
 		public void keyEvent(final KeyEvent e) {
 			if (e.getAction() == KeyEvent.RELEASE && e.isShiftDown())
-				dragConstraint = null;
+				model.releaseDrag();
 		}
 
 		public void mouseEvent(final MouseEvent e) {
 			switch (e.getAction()) {
 
+			// the dispatcher only sends presses, clicks and wheel events from
+			// inside the viewport
 			case MouseEvent.PRESS:
-				if (insideViewport(p.mouseX, p.mouseY)) {
-					isActive = true;
-				}
+				isActive = true;
+				pointerX = e.getX();
+				pointerY = e.getY();
+				button = e.getButton();
+				pointerVelocity.reset();
+				pointerVelocity.add(e.getMillis(), pointerX, pointerY);
 				break;
 
 			case MouseEvent.RELEASE:
-				dragConstraint = null;
+				model.releaseDrag();
 				isActive = false;
+				pointerVelocity.reset();
 				break;
 
 			case MouseEvent.CLICK:
-				if (insideViewport(p.mouseX, p.mouseY)) {
-					if (resetOnDoubleClick && 2 == (int)e.getCount()) {
-						reset();
-					}
+				if (resetOnDoubleClick && 2 == (int)e.getCount()) {
+					reset();
 				}
 				break;
 
 			case MouseEvent.WHEEL:
-				if (wheelHandler != null && insideViewport(p.mouseX, p.mouseY)) {
+				if (wheelHandler != null) {
 					wheelHandler.handleWheel((int)e.getCount());
 				}
 				break;
 
 			case MouseEvent.DRAG:
 				if (isActive) {
-					final double dx = p.mouseX - p.pmouseX;
-					final double dy = p.mouseY - p.pmouseY;
-
-					if (e.isShiftDown()) {
-						if (dragConstraint == null && Math.abs(dx - dy) > 1) {
-							dragConstraint = Math.abs(dx) > Math.abs(dy) ? Constraint.YAW
-									: Constraint.PITCH;
-						}
-					} else if (permaConstraint != null) {
-						dragConstraint = permaConstraint;
-					} else {
-						dragConstraint = null;
-					}
+					// measured between events, not frames, so that however
+					// many arrive per frame, each is counted once
+					final double dx = e.getX() - pointerX;
+					final double dy = e.getY() - pointerY;
+					pointerX = e.getX();
+					pointerY = e.getY();
+					pointerVelocity.add(e.getMillis(), pointerX, pointerY);
+
+					model.constrainDrag(e.isShiftDown(), dx, dy);
 
-					final int b = p.mouseButton;
+					final int b = e.getButton() != 0 ? e.getButton() : button;
 					if (centerDragHandler != null && (b == PConstants.CENTER
 							|| (b == PConstants.LEFT && e.isMetaDown()))) {
 						centerDragHandler.handleDrag(dx, dy);
@@ -370,104 +498,186 @@ public class PeasyCam {
 		}
 	}
 
-	private void mouseZoom(final double delta) {
-		double new_distance = distance + delta * distance * 0.02;
-		if (new_distance < minimumDistance) {
-			new_distance = minimumDistance;
-			dampedZoom.stop();
-		}
-		if (new_distance > maximumDistance) {
-			new_distance = maximumDistance;
-			dampedZoom.stop();
-		}
-		safeSetDistance(new_distance);
+	/**
+	 * The pointer's velocity over the last tenth of a second of the current
+	 * drag, in pixels per second, measured from event timestamps; zero when
+	 * not dragging.
+	 * 
+	 * @return out, holding x and y
+	 */
+	public double[] getPointerVelocity(final double[] out) {
+		out[0] = pointerVelocity.getX();
+		out[1] = pointerVelocity.getY();
+		return out;
 	}
 
-	private void mousePan(final double dxMouse, final double dyMouse) {
-		final double panScale = distance * 0.0025;
-		pan(dragConstraint == Constraint.PITCH ? 0 : -dxMouse * panScale,
-				dragConstraint == Constraint.YAW ? 0 : -dyMouse * panScale);
+	public double[] getPointerVelocity() {
+		return getPointerVelocity(new double[2]);
 	}
 
 	private void mouseRotate(final double dx, final double dy) {
-		double mult = -Math.pow(Math.log10(1 + distance), 0.5) * 0.00125f;
-
-		double dmx = dx * mult;
-		double dmy = dy * mult;
-
-		double viewX = viewport[0];
-		double viewY = viewport[1];
-		double viewW = viewport[2];
-		double viewH = viewport[3];
-
+		final int x = peasyEventListener.pointerX;
+		final int y = peasyEventListener.pointerY;
 		// mouse [-1, +1]
-		double mxNdc = Math.min(Math.max((p.mouseX - viewX) / viewW, 0), 1) * 2 - 1;
-		double myNdc = Math.min(Math.max((p.mouseY - viewY) / viewH, 0), 1) * 2 - 1;
-
-		if (dragConstraint == null || dragConstraint == Constraint.YAW
-				|| dragConstraint == Constraint.SUPPRESS_ROLL) {
-			rotateY.impulse(+dmx * (1.0 - myNdc * myNdc));
-		}
-		if (dragConstraint == null || dragConstraint == Constraint.PITCH
-				|| dragConstraint == Constraint.SUPPRESS_ROLL) {
-			rotateX.impulse(-dmy * (1.0 - mxNdc * mxNdc));
-		}
-		if (dragConstraint == null || dragConstraint == Constraint.ROLL) {
-			rotateZ.impulse(-dmx * myNdc);
-			rotateZ.impulse(+dmy * mxNdc);
-		}
+		final double mxNdc = Math.min(Math.max((x - viewport[0])
+				/ (double)viewport[2], 0), 1) * 2 - 1;
+		final double myNdc = Math.min(Math.max((y - viewport[1])
+				/ (double)viewport[3], 0), 1) * 2 - 1;
+		model.dragRotate(dx, dy, mxNdc, myNdc);
 	}
 
 	public double getDistance() {
-		return distance;
+		return model.getDistance();
 	}
 
 	public void setDistance(final double newDistance) {
-		setDistance(newDistance, 300);
+		model.setDistance(newDistance);
 	}
 
 	public void setDistance(final double newDistance, final long animationTimeMillis) {
-		distanceInterps
-				.startInterpolation(new DistanceInterp(newDistance, animationTimeMillis));
+		model.setDistance(newDistance, animationTimeMillis);
 	}
 
 	public float[] getLookAt() {
-		return new float[] { (float)center.getX(), (float)center.getY(),
-				(float)center.getZ() };
+		return model.getLookAt();
+	}
+
+	/**
+	 * As {@link #getLookAt()}, but writes into the given array.
+	 * 
+	 * @return out
+	 */
+	public float[] getLookAt(final float[] out) {
+		return model.getLookAt(out);
 	}
 
 	public void lookAt(final double x, final double y, final double z) {
-		centerInterps.startInterpolation(new CenterInterp(new Vector3D(x, y, z), 300));
+		model.lookAt(x, y, z);
 	}
 
 	public void lookAt(final double x, final double y, final double z,
 			final double distance) {
-		lookAt(x, y, z);
-		setDistance(distance);
+		model.lookAt(x, y, z, distance);
 	}
 
 	public void lookAt(final double x, final double y, final double z,
 			final long animationTimeMillis) {
-		lookAt(x, y, z, distance, animationTimeMillis);
+		model.lookAt(x, y, z, animationTimeMillis);
 	}
 
 	public void lookAt(final double x, final double y, final double z,
 			final double distance, final long animationTimeMillis) {
-		setState(new CameraState(rotation, new Vector3D(x, y, z), distance),
-				animationTimeMillis);
+		model.lookAt(x, y, z, distance, animationTimeMillis);
 	}
 
-	private void safeSetDistance(final double distance) {
-		this.distance = Math.min(maximumDistance, Math.max(minimumDistance, distance));
+	/**
+	 * When true, {@link #feed()} writes the modelview matrix and its inverse
+	 * straight from the camera's rotation, center and distance, instead of
+	 * going through {@link PGraphics#camera(float, float, float, float, float, float, float, float, float)},
+	 * which rebuilds and inverts the same matrix. This only applies to OpenGL
+	 * renderers. Note that the renderer's eye distance, which is only used as
+	 * the default depth range of {@link PGraphics#ortho()}, is not updated in
+	 * this mode. Off by default.
+	 */
+	public void setDirectFeed(final boolean directFeed) {
+		this.directFeed = directFeed;
+	}
+
+	public boolean isDirectFeed() {
+		return directFeed;
+	}
+
+	/**
+	 * Stop the camera from setting the canvas's camera matrix whenever it
+	 * moves; the sketch then calls {@link #apply()}, or
+	 * {@link #beginView()} and {@link #endView()}, where it draws this
+	 * camera's view. That way several cameras can draw into one canvas,
+	 * each into its own viewport, without overwriting each other. Off by
+	 * default.
+	 */
+	public void setExplicitApply(final boolean explicitApply) {
+		this.explicitApply = explicitApply;
+	}
+
+	public boolean isExplicitApply() {
+		return explicitApply;
+	}
+
+	/**
+	 * Set the canvas's camera matrix to this camera, now. The same as
+	 * {@link #feed()}.
+	 */
+	public void apply() {
+		feed();
+	}
+
+	/**
+	 * Begin drawing this camera's view, within its viewport: restrict drawing
+	 * to the viewport, set a perspective projection with Processing's default
+	 * field of view and depth range for the viewport's height, and apply the
+	 * camera. Must be followed by {@link #endView()}. The viewport and scissor
+	 * need an OpenGL renderer; with others, only the projection and camera
+	 * are set.
+	 */
+	public void beginView() {
+		final float fov = PConstants.PI / 3;
+		final float eyeZ = viewport[3] / 2f / (float)Math.tan(fov / 2);
+		beginView(fov, eyeZ / 10, eyeZ * 10);
+	}
+
+	/**
+	 * As {@link #beginView()}, with the given vertical field of view, in
+	 * radians, and depth range.
+	 */
+	public void beginView(final float fovy, final float near, final float far) {
+		final int w = viewport[2], h = viewport[3];
+		if (g instanceof PGraphicsOpenGL) {
+			final PGraphicsOpenGL pg = (PGraphicsOpenGL)g;
+			// flushes what's been drawn so far; endPGL() restores the
+			// renderer's viewport, so ours must be set after it
+			final PGL pgl = pg.beginPGL();
+			pg.endPGL();
+			// from the bottom left, in the sketch's units; PGL scales them to
+			// pixels itself
+			final int x = viewport[0], y = g.height - viewport[1] - h;
+			pgl.enable(PGL.SCISSOR_TEST);
+			pgl.scissor(x, y, w, h);
+			pgl.viewport(x, y, w, h);
+			pg.pushProjection();
+		}
+		g.pushMatrix();
+		g.perspective(fovy, w / (float)h, near, far);
 		feed();
 	}
 
+	/**
+	 * End drawing this camera's view, restoring the projection, the matrix,
+	 * and drawing to the whole canvas.
+	 */
+	public void endView() {
+		g.popMatrix();
+		if (g instanceof PGraphicsOpenGL) {
+			final PGraphicsOpenGL pg = (PGraphicsOpenGL)g;
+			pg.popProjection();
+			final PGL pgl = pg.beginPGL();
+			pg.endPGL();
+			pgl.disable(PGL.SCISSOR_TEST);
+			pgl.viewport(0, 0, g.width, g.height);
+		}
+	}
+
 	public void feed() {
-		final Vector3D pos = rotation.applyTo(LOOK).scalarMultiply(distance).add(center);
-		final Vector3D rup = rotation.applyTo(UP);
-		g.camera((float)pos.getX(), (float)pos.getY(), (float)pos.getZ(), //
+		if (directFeed && g instanceof PGraphicsOpenGL) {
+			apply((PGraphicsOpenGL)g, model.center(), model.rotation(),
+					model.getDistance());
+			return;
+		}
+		final MutableVector3D eye = model.eye();
+		final MutableVector3D center = model.center();
+		final MutableVector3D up = model.up();
+		g.camera((float)eye.getX(), (float)eye.getY(), (float)eye.getZ(), //
 				(float)center.getX(), (float)center.getY(), (float)center.getZ(), //
-				(float)rup.getX(), (float)rup.getY(), (float)rup.getZ());
+				(float)up.getX(), (float)up.getY(), (float)up.getZ());
 	}
 
 	static void apply(final PGraphics g, final Vector3D center, final Rotation rotation,
@@ -479,43 +689,84 @@ public class PeasyCam {
 				(float)rup.getX(), (float)rup.getY(), (float)rup.getZ());
 	}
 
+	static void apply(final PGraphicsOpenGL g, final MutableVector3D center,
+			final MutableRotation rotation, final double distance) {
+		final double q0 = rotation.getQ0(), q1 = rotation.getQ1(), q2 = rotation.getQ2(),
+				q3 = rotation.getQ3();
+		final double cx = center.getX(), cy = center.getY(), cz = center.getZ();
+
+		// the images of the canonical axes are the rows of the modelview
+		// rotation, and the columns of its inverse
+		final double x0 = 2 * (q0 * q0 + q1 * q1) - 1;
+		final double x1 = 2 * (q1 * q2 - q0 * q3);
+		final double x2 = 2 * (q1 * q3 + q0 * q2);
+		final double y0 = 2 * (q1 * q2 + q0 * q3);
+		final double y1 = 2 * (q0 * q0 + q2 * q2) - 1;
+		final double y2 = 2 * (q2 * q3 - q0 * q1);
+		final double z0 = 2 * (q1 * q3 - q0 * q2);
+		final double z1 = 2 * (q2 * q3 + q0 * q1);
+		final double z2 = 2 * (q0 * q0 + q3 * q3) - 1;
+
+		final double ex = cx + distance * z0;
+		final double ey = cy + distance * z1;
+		final double ez = cz + distance * z2;
+
+		g.modelview.set((float)x0, (float)x1, (float)x2, (float)-(x0 * cx + x1 * cy + x2 * cz), //
+				(float)y0, (float)y1, (float)y2, (float)-(y0 * cx + y1 * cy + y2 * cz), //
+				(float)z0, (float)z1, (float)z2, (float)-(z0 * cx + z1 * cy + z2 * cz + distance), //
+				0, 0, 0, 1);
+		g.modelviewInv.set((float)x0, (float)y0, (float)z0, (float)ex, //
+				(float)x1, (float)y1, (float)z1, (float)ey, //
+				(float)x2, (float)y2, (float)z2, (float)ez, //
+				0, 0, 0, 1);
+		g.camera.set(g.modelview);
+		g.cameraInv.set(g.modelviewInv);
+		g.cameraX = (float)ex;
+		g.cameraY = (float)ey;
+		g.cameraZ = (float)ez;
+		g.updateProjmodelview();
+	}
+
 	/**
 	 * Where is the PeasyCam in world space?
 	 * 
 	 * @return float[]{x,y,z}
 	 */
 	public float[] getPosition() {
-		final Vector3D pos = rotation.applyTo(LOOK).scalarMultiply(distance).add(center);
-		return new float[] { (float)pos.getX(), (float)pos.getY(), (float)pos.getZ() };
+		return model.getPosition();
+	}
+
+	/**
+	 * As {@link #getPosition()}, but writes into the given array.
+	 * 
+	 * @return out
+	 */
+	public float[] getPosition(final float[] out) {
+		return model.getPosition(out);
 	}
 
 	public void reset() {
-		reset(300);
+		model.reset();
 	}
 
 	public void reset(final long animationTimeInMillis) {
-		setState(new CameraState(new Rotation(), startCenter, startDistance),
-				animationTimeInMillis);
+		model.reset(animationTimeInMillis);
 	}
 
 	public void pan(final double dx, final double dy) {
-		center = center.add(rotation.applyTo(new Vector3D(dx, dy, 0)));
-		feed();
+		model.pan(dx, dy);
 	}
 
 	public void rotateX(final double angle) {
-		rotation = rotation.applyTo(new Rotation(Vector3D.plusI, angle));
-		feed();
+		model.rotateX(angle);
 	}
 
 	public void rotateY(final double angle) {
-		rotation = rotation.applyTo(new Rotation(Vector3D.plusJ, angle));
-		feed();
+		model.rotateY(angle);
 	}
 
 	public void rotateZ(final double angle) {
-		rotation = rotation.applyTo(new Rotation(Vector3D.plusK, angle));
-		feed();
+		model.rotateZ(angle);
 	}
 
 	PApplet getApplet() {
@@ -523,52 +774,50 @@ public class PeasyCam {
 	}
 
 	public CameraState getState() {
-		return new CameraState(rotation, center, distance);
+		return model.getState();
 	}
 
 	/**
 	 * Permit arbitrary rotation. (Default mode.)
 	 */
 	public void setFreeRotationMode() {
-		permaConstraint = null;
+		model.setFreeRotationMode();
 	}
 
 	/**
 	 * Only permit yaw.
 	 */
 	public void setYawRotationMode() {
-		permaConstraint = Constraint.YAW;
+		model.setYawRotationMode();
 	}
 
 	/**
 	 * Only permit pitch.
 	 */
 	public void setPitchRotationMode() {
-		permaConstraint = Constraint.PITCH;
+		model.setPitchRotationMode();
 	}
 
 	/**
 	 * Only permit roll.
 	 */
 	public void setRollRotationMode() {
-		permaConstraint = Constraint.ROLL;
+		model.setRollRotationMode();
 	}
 
 	/**
 	 * Only suppress roll.
 	 */
 	public void setSuppressRollRotationMode() {
-		permaConstraint = Constraint.SUPPRESS_ROLL;
+		model.setSuppressRollRotationMode();
 	}
 
 	public void setMinimumDistance(final double minimumDistance) {
-		this.minimumDistance = Math.max(minimumDistance, SMALLEST_MINIMUM_DISTANCE);
-		safeSetDistance(distance);
+		model.setMinimumDistance(minimumDistance);
 	}
 
 	public void setMaximumDistance(final double maximumDistance) {
-		this.maximumDistance = maximumDistance;
-		safeSetDistance(distance);
+		model.setMaximumDistance(maximumDistance);
 	}
 
 	public void setResetOnDoubleClick(final boolean resetOnDoubleClick) {
@@ -576,29 +825,68 @@ public class PeasyCam {
 	}
 
 	public void setState(final CameraState state) {
-		setState(state, 300);
+		model.setState(state);
 	}
 
 	public void setState(final CameraState state, final long animationTimeMillis) {
-		if (animationTimeMillis > 0) {
-			rotationInterps.startInterpolation(
-					new RotationInterp(state.rotation, animationTimeMillis));
-			centerInterps.startInterpolation(
-					new CenterInterp(state.center, animationTimeMillis));
-			distanceInterps.startInterpolation(
-					new DistanceInterp(state.distance, animationTimeMillis));
-		} else {
-			this.rotation = state.rotation;
-			this.center = state.center;
-			this.distance = state.distance;
-		}
-		feed();
+		model.setState(state, animationTimeMillis);
+	}
+
+	public void setState(final CameraState state, final long animationTimeMillis,
+			final RotationBlend blend) {
+		model.setState(state, animationTimeMillis, blend);
+	}
+
+	/**
+	 * Move the camera along the given path, from its first key to its last,
+	 * over the given time.
+	 *
+	 * @see CameraModel#play(CameraPath, long)
+	 */
+	public void play(final CameraPath path, final long animationTimeMillis) {
+		model.play(path, animationTimeMillis);
+	}
+
+	public void play(final CameraPath path, final long animationTimeMillis,
+			final RotationBlend blend) {
+		model.play(path, animationTimeMillis, blend);
+	}
+
+	/**
+	 * @see CameraModel#setRotationBlend(RotationBlend)
+	 */
+	public void setRotationBlend(final RotationBlend blend) {
+		model.setRotationBlend(blend);
+	}
+
+	public RotationBlend getRotationBlend() {
+		return model.getRotationBlend();
+	}
+
+	/**
+	 * @see CameraModel#setEasing(Easing)
+	 */
+	public void setEasing(final Easing easing) {
+		model.setEasing(easing);
+	}
+
+	public Easing getEasing() {
+		return model.getEasing();
+	}
+
+	/**
+	 * @see CameraModel#setClock(PeasyClock)
+	 */
+	public void setClock(final PeasyClock clock) {
+		model.setClock(clock);
+	}
+
+	public PeasyClock getClock() {
+		return model.getClock();
 	}
 
 	public void setRotations(final double pitch, final double yaw, final double roll) {
-		rotationInterps.cancelInterpolation();
-		this.rotation = new Rotation(RotationOrder.XYZ, pitch, yaw, roll);
-		feed();
+		model.setRotations(pitch, yaw, roll);
 	}
 
 	/**
@@ -614,22 +902,17 @@ public class PeasyCam {
 	 *text("Here I am!", 0, 0, 0);</pre>
 	 */
 	public float[] getRotations() {
-		try {
-			final double[] angles = rotation.getAngles(RotationOrder.XYZ);
-			return new float[] { (float)angles[0], (float)angles[1], (float)angles[2] };
-		} catch (final CardanEulerSingularityException e) {
-		}
-		try {
-			final double[] angles = rotation.getAngles(RotationOrder.YXZ);
-			return new float[] { (float)angles[1], (float)angles[0], (float)angles[2] };
-		} catch (final CardanEulerSingularityException e) {
-		}
-		try {
-			final double[] angles = rotation.getAngles(RotationOrder.ZXY);
-			return new float[] { (float)angles[2], (float)angles[0], (float)angles[1] };
-		} catch (final CardanEulerSingularityException e) {
-		}
-		return new float[] { 0, 0, 0 };
+		return model.getRotations();
+	}
+
+	/**
+	 * As {@link #getRotations()}, but writes the rotations into the given
+	 * array, and neither throws nor allocates.
+	 * 
+	 * @return out
+	 */
+	public float[] getRotations(final float[] out) {
+		return model.getRotations(out);
 	}
 
 	private boolean pushedLights = false;
@@ -674,106 +957,4 @@ public class PeasyCam {
 		g.popMatrix();
 		g.hint(PConstants.ENABLE_DEPTH_TEST);
 	}
-
-	abstract public class AbstractInterp {
-		double startTime;
-		final double timeInMillis;
-
-		protected AbstractInterp(final long timeInMillis) {
-			this.timeInMillis = timeInMillis;
-		}
-
-		void start() {
-			startTime = p.millis();
-			p.registerMethod("draw", this);
-		}
-
-		void cancel() {
-			p.unregisterMethod("draw", this);
-		}
-
-		public void draw() {
-			final double t = (p.millis() - startTime) / timeInMillis;
-			if (t > .99) {
-				cancel();
-				setEndState();
-			} else {
-				interp(t);
-			}
-			feed();
-		}
-
-		protected abstract void interp(double t);
-
-		protected abstract void setEndState();
-	}
-
-	class DistanceInterp extends AbstractInterp {
-		private final double startDistance = distance;
-		private final double endDistance;
-
-		public DistanceInterp(final double endDistance, final long timeInMillis) {
-			super(timeInMillis);
-			this.endDistance = Math.min(maximumDistance,
-					Math.max(minimumDistance, endDistance));
-		}
-
-		@Override
-		protected void interp(final double t) {
-			distance = InterpolationUtil.smooth(startDistance, endDistance, t);
-		}
-
-		@Override
-		protected void setEndState() {
-			distance = endDistance;
-		}
-	}
-
-	class CenterInterp extends AbstractInterp {
-		private final Vector3D startCenter = center;
-		private final Vector3D endCenter;
-
-		public CenterInterp(final Vector3D endCenter, final long timeInMillis) {
-			super(timeInMillis);
-			this.endCenter = endCenter;
-		}
-
-		@Override
-		protected void interp(final double t) {
-			center = InterpolationUtil.smooth(startCenter, endCenter, t);
-		}
-
-		@Override
-		protected void setEndState() {
-			center = endCenter;
-		}
-	}
-
-	class RotationInterp extends AbstractInterp {
-		final Rotation startRotation = rotation;
-		final Rotation endRotation;
-
-		public RotationInterp(final Rotation endRotation, final long timeInMillis) {
-			super(timeInMillis);
-			this.endRotation = endRotation;
-		}
-
-		@Override
-		void start() {
-			rotateX.stop();
-			rotateY.stop();
-			rotateZ.stop();
-			super.start();
-		}
-
-		@Override
-		protected void interp(final double t) {
-			rotation = InterpolationUtil.slerp(startRotation, endRotation, t);
-		}
-
-		@Override
-		protected void setEndState() {
-			rotation = endRotation;
-		}
-	}
 }
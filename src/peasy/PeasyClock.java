@@ -0,0 +1,41 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * Where a camera gets the time that paces its damping and transitions.
+ *
+ * @see VirtualClock
+ * @see CameraModel#setClock(PeasyClock)
+ */
+public interface PeasyClock {
+	/**
+	 * Wall-clock time, from {@link System#nanoTime()}. The default.
+	 */
+	public static final PeasyClock SYSTEM = new PeasyClock() {
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+
+	/**
+	 * @return the current time in nanoseconds, from an arbitrary origin
+	 */
+	public long nanoTime();
+}
@@ -0,0 +1,115 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import processing.core.PApplet;
+
+/**
+ * The one per-frame hook for all of a sketch's cameras. It is registered
+ * with the sketch once, when its first camera is made, and stays registered;
+ * cameras that start moving join its list, and are dropped from it once they
+ * come to rest, so that waking and sleeping never touch Processing's method
+ * registry, which must not change while it is calling the hooks. Cameras
+ * with a command queue are also checked every frame, asleep or not, for
+ * commands queued by other threads. When the sketch is disposed, it closes
+ * the recorders the cameras made for themselves.
+ *
+ * <p>
+ * Public only because Processing calls {@link #draw()} and
+ * {@link #dispose()} by reflection.
+ */
+public final class PeasyDrawDispatcher {
+	// as in PeasyEventDispatcher; the sketch holds its dispatcher strongly
+	private static final Map<PApplet, WeakReference<PeasyDrawDispatcher>> dispatchers = new WeakHashMap<PApplet, WeakReference<PeasyDrawDispatcher>>();
+
+	static synchronized PeasyDrawDispatcher get(final PApplet p) {
+		final WeakReference<PeasyDrawDispatcher> ref = dispatchers.get(p);
+		PeasyDrawDispatcher dispatcher = ref == null ? null : ref.get();
+		if (dispatcher == null) {
+			dispatcher = new PeasyDrawDispatcher();
+			dispatchers.put(p, new WeakReference<PeasyDrawDispatcher>(dispatcher));
+			p.registerMethod("draw", dispatcher);
+			p.registerMethod("dispose", dispatcher);
+		}
+		return dispatcher;
+	}
+
+	private PeasyDrawDispatcher() {
+	}
+
+	// the cameras to update this frame; a camera that has gone to sleep is
+	// dropped after the frame's updates
+	private final ArrayList<PeasyCam> awake = new ArrayList<PeasyCam>();
+	// the cameras with command queues
+	private final ArrayList<PeasyCam> watched = new ArrayList<PeasyCam>();
+
+	/**
+	 * Update the camera every frame until it sleeps.
+	 */
+	void wake(final PeasyCam cam) {
+		if (!cam.listed) {
+			cam.listed = true;
+			awake.add(cam);
+		}
+	}
+
+	/**
+	 * Wake the camera whenever commands are queued for it.
+	 */
+	void watch(final PeasyCam cam) {
+		if (!cam.watched) {
+			cam.watched = true;
+			watched.add(cam);
+		}
+	}
+
+	public void draw() {
+		for (int i = 0; i < watched.size(); i++) {
+			watched.get(i).checkCommands();
+		}
+		// cameras woken meanwhile are appended, and updated this frame too
+		for (int i = 0; i < awake.size(); i++) {
+			awake.get(i).update();
+		}
+		int kept = 0;
+		for (int i = 0; i < awake.size(); i++) {
+			final PeasyCam cam = awake.get(i);
+			if (cam.isSleeping()) {
+				cam.listed = false;
+			} else {
+				awake.set(kept++, cam);
+			}
+		}
+		while (awake.size() > kept) {
+			awake.remove(awake.size() - 1);
+		}
+	}
+
+	public void dispose() {
+		// a recording camera never sleeps, so it's on the list
+		for (int i = 0; i < awake.size(); i++) {
+			awake.get(i).closeOwnRecorder();
+		}
+	}
+}
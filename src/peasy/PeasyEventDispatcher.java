@@ -0,0 +1,199 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import processing.core.PApplet;
+import processing.event.KeyEvent;
+import processing.event.MouseEvent;
+
+/**
+ * Receives a sketch's mouse and key events once, for all of its active
+ * cameras, and hands each mouse event to the one camera it belongs to: the
+ * camera that saw the press, for the rest of a drag, and otherwise the
+ * camera under the pointer, found through a uniform grid over the
+ * viewports. Where viewports overlap, the camera activated last wins. Key
+ * events go to every camera.
+ *
+ * <p>
+ * Public only because Processing calls {@link #mouseEvent(MouseEvent)} and
+ * {@link #keyEvent(KeyEvent)} by reflection.
+ */
+public final class PeasyEventDispatcher {
+	// cells across and down the grid
+	private static final int GRID_SIZE = 16;
+
+	// weakly held both ways, so as not to keep a finished sketch alive; the
+	// sketch holds its dispatcher while any camera is registered with it
+	private static final Map<PApplet, WeakReference<PeasyEventDispatcher>> dispatchers = new WeakHashMap<PApplet, WeakReference<PeasyEventDispatcher>>();
+
+	static synchronized PeasyEventDispatcher get(final PApplet p) {
+		final WeakReference<PeasyEventDispatcher> ref = dispatchers.get(p);
+		PeasyEventDispatcher dispatcher = ref == null ? null : ref.get();
+		if (dispatcher == null) {
+			dispatcher = new PeasyEventDispatcher();
+			dispatchers.put(p, new WeakReference<PeasyEventDispatcher>(dispatcher));
+		}
+		return dispatcher;
+	}
+
+	private PeasyEventDispatcher() {
+	}
+
+	// in order of activation
+	private final ArrayList<PeasyCam> cameras = new ArrayList<PeasyCam>();
+	// the camera which saw the press, until the release
+	private PeasyCam captured = null;
+
+	// the grid: indices into cameras, in order, of the viewports touching each
+	// cell; rebuilt when the cameras or their viewports change
+	private boolean stale = true;
+	private int gridX, gridY, cellWidth, cellHeight;
+	private final int[][] cells = new int[GRID_SIZE * GRID_SIZE][];
+
+	void add(final PApplet p, final PeasyCam cam) {
+		if (cameras.isEmpty()) {
+			p.registerMethod("mouseEvent", this);
+			p.registerMethod("keyEvent", this);
+		}
+		cameras.add(cam);
+		stale = true;
+	}
+
+	void remove(final PApplet p, final PeasyCam cam) {
+		if (!cameras.remove(cam)) {
+			return;
+		}
+		if (captured == cam) {
+			captured = null;
+		}
+		if (cameras.isEmpty()) {
+			p.unregisterMethod("mouseEvent", this);
+			p.unregisterMethod("keyEvent", this);
+		}
+		stale = true;
+	}
+
+	/**
+	 * A camera's viewport has changed.
+	 */
+	void invalidate() {
+		stale = true;
+	}
+
+	public void mouseEvent(final MouseEvent e) {
+		final PeasyCam target;
+		switch (e.getAction()) {
+		case MouseEvent.PRESS:
+			target = captured = cameraAt(e.getX(), e.getY());
+			break;
+		case MouseEvent.DRAG:
+			target = captured;
+			break;
+		case MouseEvent.RELEASE:
+			target = captured;
+			captured = null;
+			break;
+		default:
+			target = cameraAt(e.getX(), e.getY());
+			break;
+		}
+		if (target != null) {
+			target.peasyEventListener.mouseEvent(e);
+		}
+	}
+
+	public void keyEvent(final KeyEvent e) {
+		for (int i = 0; i < cameras.size(); i++) {
+			cameras.get(i).peasyEventListener.keyEvent(e);
+		}
+	}
+
+	/**
+	 * @return the last activated camera whose viewport contains the point, or
+	 *         null
+	 */
+	PeasyCam cameraAt(final double x, final double y) {
+		if (stale) {
+			rebuild();
+		}
+		final int column = (int)Math.floor((x - gridX) / cellWidth);
+		final int row = (int)Math.floor((y - gridY) / cellHeight);
+		if (column < 0 || column >= GRID_SIZE || row < 0 || row >= GRID_SIZE) {
+			return null;
+		}
+		final int[] cell = cells[row * GRID_SIZE + column];
+		for (int i = cell.length - 1; i >= 0; i--) {
+			final PeasyCam cam = cameras.get(cell[i]);
+			if (cam.insideViewport(x, y)) {
+				return cam;
+			}
+		}
+		return null;
+	}
+
+	private void rebuild() {
+		stale = false;
+		int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE;
+		int x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+		for (final PeasyCam cam : cameras) {
+			final int[] v = cam.getViewport();
+			x0 = Math.min(x0, v[0]);
+			y0 = Math.min(y0, v[1]);
+			x1 = Math.max(x1, v[0] + v[2]);
+			y1 = Math.max(y1, v[1] + v[3]);
+		}
+		gridX = x0;
+		gridY = y0;
+		cellWidth = Math.max(1, (x1 - x0 + GRID_SIZE - 1) / GRID_SIZE);
+		cellHeight = Math.max(1, (y1 - y0 + GRID_SIZE - 1) / GRID_SIZE);
+
+		final ArrayList<ArrayList<Integer>> lists = new ArrayList<ArrayList<Integer>>();
+		for (int c = 0; c < cells.length; c++) {
+			lists.add(new ArrayList<Integer>());
+		}
+		for (int i = 0; i < cameras.size(); i++) {
+			final int[] v = cameras.get(i).getViewport();
+			final int c0 = cell(v[0], gridX, cellWidth);
+			final int c1 = cell(v[0] + v[2], gridX, cellWidth);
+			final int r0 = cell(v[1], gridY, cellHeight);
+			final int r1 = cell(v[1] + v[3], gridY, cellHeight);
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					lists.get(r * GRID_SIZE + c).add(i);
+				}
+			}
+		}
+		for (int c = 0; c < cells.length; c++) {
+			final ArrayList<Integer> list = lists.get(c);
+			cells[c] = new int[list.size()];
+			for (int i = 0; i < cells[c].length; i++) {
+				cells[c][i] = list.get(i);
+			}
+		}
+	}
+
+	private static int cell(final int coordinate, final int origin, final int size) {
+		return Math.min(Math.max((coordinate - origin) / size, 0), GRID_SIZE - 1);
+	}
+}
@@ -0,0 +1,78 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * Estimates how fast the pointer is moving, from the timestamps and positions
+ * of the last few events, so that the estimate depends neither on the frame
+ * rate nor on how many events arrive per frame.
+ */
+final class PointerVelocity {
+	private static final int SIZE = 8;
+	// how far back, in milliseconds, samples count toward the estimate
+	private static final long WINDOW = 100;
+
+	private final long[] times = new long[SIZE];
+	private final double[] xs = new double[SIZE];
+	private final double[] ys = new double[SIZE];
+	// samples added so far; the newest is at (count - 1) % SIZE
+	private int count = 0;
+
+	private double vx, vy;
+
+	void reset() {
+		count = 0;
+		vx = vy = 0;
+	}
+
+	void add(final long millis, final double x, final double y) {
+		final int i = count++ % SIZE;
+		times[i] = millis;
+		xs[i] = x;
+		ys[i] = y;
+
+		// measure from the oldest sample in the window
+		vx = vy = 0;
+		for (int back = Math.min(count, SIZE) - 1; back > 0; back--) {
+			final int j = (count - 1 - back) % SIZE;
+			final long dt = millis - times[j];
+			if (dt <= WINDOW) {
+				if (dt > 0) {
+					vx = (x - xs[j]) * 1000 / dt;
+					vy = (y - ys[j]) * 1000 / dt;
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return pixels per second
+	 */
+	double getX() {
+		return vx;
+	}
+
+	/**
+	 * @return pixels per second
+	 */
+	double getY() {
+		return vy;
+	}
+}
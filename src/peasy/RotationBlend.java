@@ -0,0 +1,84 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * How animated transitions and camera paths blend between two rotations.
+ */
+public enum RotationBlend {
+	/**
+	 * Spherical linear interpolation: exact, and constant in angular velocity.
+	 */
+	SLERP {
+		@Override
+		MutableRotation blend(final double a0, final double a1, final double a2,
+				final double a3, final double b0, final double b1, final double b2,
+				final double b3, final double t, final MutableRotation out) {
+			return InterpolationUtil.slerp(a0, a1, a2, a3, b0, b1, b2, b3, t, out);
+		}
+
+		@Override
+		MutableRotation blendArc(final double a0, final double a1, final double a2,
+				final double a3, final double b0, final double b1, final double b2,
+				final double b3, final double t, final MutableRotation out) {
+			return InterpolationUtil.slerpArc(a0, a1, a2, a3, b0, b1, b2, b3, t, out);
+		}
+	},
+
+	/**
+	 * Corrected normalized linear interpolation: several times cheaper than
+	 * slerp, and close enough to it for animation.
+	 *
+	 * @see InterpolationUtil#fastSlerp(MutableRotation, MutableRotation, double, MutableRotation)
+	 */
+	FAST {
+		@Override
+		MutableRotation blend(final double a0, final double a1, final double a2,
+				final double a3, final double b0, final double b1, final double b2,
+				final double b3, final double t, final MutableRotation out) {
+			return InterpolationUtil.fastSlerp(a0, a1, a2, a3, b0, b1, b2, b3, t, out);
+		}
+
+		@Override
+		MutableRotation blendArc(final double a0, final double a1, final double a2,
+				final double a3, final double b0, final double b1, final double b2,
+				final double b3, final double t, final MutableRotation out) {
+			return InterpolationUtil.fastSlerpArc(a0, a1, a2, a3, b0, b1, b2, b3, t,
+					out);
+		}
+	};
+
+	public MutableRotation blend(final MutableRotation a, final MutableRotation b,
+			final double t, final MutableRotation out) {
+		return blend(a.getQ0(), a.getQ1(), a.getQ2(), a.getQ3(), b.getQ0(), b.getQ1(),
+				b.getQ2(), b.getQ3(), t, out);
+	}
+
+	/**
+	 * Blend along the shorter way round from a to b.
+	 */
+	abstract MutableRotation blend(double a0, double a1, double a2, double a3,
+			double b0, double b1, double b2, double b3, double t, MutableRotation out);
+
+	/**
+	 * Blend along the great arc from quaternion a to quaternion b as given.
+	 */
+	abstract MutableRotation blendArc(double a0, double a1, double a2, double a3,
+			double b0, double b1, double b2, double b3, double t, MutableRotation out);
+}
@@ -0,0 +1,68 @@
+/*
+   The PeasyCam Processing library, which provides an easy-peasy
+   camera for 3D sketching.
+
+   Copyright 2008 Jonathan Feinberg
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package peasy;
+
+/**
+ * A clock which only moves when told to, so that camera motion can be
+ * rendered frame by frame, faster or slower than real time, and comes out the
+ * same every run. Call {@link #step()} once per rendered frame, before the
+ * camera updates.
+ *
+ * <pre>
+ * VirtualClock clock = new VirtualClock(30);
+ * cam.setClock(clock);
+ * ...
+ * void draw() {
+ *   clock.step();
+ *   ...
+ *   saveFrame();
+ * }
+ * </pre>
+ */
+public class VirtualClock implements PeasyClock {
+	private final long stepNanos;
+	private long now = 0;
+
+	/**
+	 * @param framesPerSecond
+	 *            how much time each {@link #step()} covers
+	 */
+	public VirtualClock(final double framesPerSecond) {
+		this.stepNanos = Math.round(1e9 / framesPerSecond);
+	}
+
+	public long nanoTime() {
+		return now;
+	}
+
+	/**
+	 * Advance by one frame.
+	 */
+	public void step() {
+		now += stepNanos;
+	}
+
+	public void advance(final long nanos) {
+		now += nanos;
+	}
+
+	public long getStepNanos() {
+		return stepNanos;
+	}
+}
@@ -2,9 +2,6 @@ package examples.MultiView_Onscreen;
 
 import peasy.PeasyCam;
 import processing.core.PApplet;
-import processing.opengl.PGL;
-import processing.opengl.PGraphics3D;
-import processing.opengl.PJOGL;
 
 public class MultiView_Onscreen extends PApplet {
 
@@ -18,8 +15,10 @@ public class MultiView_Onscreen extends PApplet {
 	// Each Camera still has its own mouse-handler. 
 	// Only the viewport-position/dimension is used to build the camera state.
 	//
-	// For rendering, some OpenGL instructions (viewport, scissors) are used to
-	// render the scene to its actual camera viewport position/size.
+	// The cameras are in explicit-apply mode, so they never touch the canvas on
+	// their own. Each view is drawn between cam.beginView() and cam.endView(),
+	// which set the OpenGL viewport and scissors to the camera's viewport, a
+	// projection to match, and the camera itself.
 	//
 	//
 
@@ -56,6 +55,7 @@ public class MultiView_Onscreen extends PApplet {
 				int cy = offy + y * tiley;
 				cameras[id] = new PeasyCam(this, 400);
 				cameras[id].setViewport(cx, cy, cw, ch); // this is the key of this whole demo
+				cameras[id].setExplicitApply(true);
 			}
 		}
 
@@ -63,7 +63,6 @@ public class MultiView_Onscreen extends PApplet {
 
 	public void draw() {
 		// clear background once, for the whole window
-		setGLGraphicsViewport(0, 0, width, height);
 		background(0);
 
 		// render scene once per camera/viewport
@@ -74,39 +73,13 @@ public class MultiView_Onscreen extends PApplet {
 			popMatrix();
 			popStyle();
 		}
-		// setGLGraphicsViewport(0, 0, width, height);
-	}
-
-	// some OpenGL instructions to set our custom viewport
-	//   https://www.khronos.org/registry/OpenGL-Refpages/gl4/html/glViewport.xhtml
-	//   https://www.khronos.org/registry/OpenGL-Refpages/gl4/html/glScissor.xhtml
-	void setGLGraphicsViewport(int x, int y, int w, int h) {
-		PGraphics3D pg = (PGraphics3D)this.g;
-		PJOGL pgl = (PJOGL)pg.beginPGL();
-		pg.endPGL();
-
-		pgl.enable(PGL.SCISSOR_TEST);
-		pgl.scissor(x, y, w, h);
-		pgl.viewport(x, y, w, h);
 	}
 
 	public void displayScene(PeasyCam cam, int ID) {
 
-		int[] viewport = cam.getViewport();
-		int w = viewport[2];
-		int h = viewport[3];
-		int x = viewport[0];
-		int y = viewport[1];
-		int y_inv = height - y - h; // inverted y-axis
-
-		// scissors-test and viewport transformation
-		setGLGraphicsViewport(x, y_inv, w, h);
-
-		// modelview - using camera state
-		cam.feed();
-
-		// projection - using camera viewport
-		perspective(60 * PI / 180, w / (float)h, 1, 5000);
+		// viewport, scissors, projection and modelview, all from the camera;
+		// a 60 degree field of view, with near and far planes at 1 and 5000
+		cam.beginView(PI / 3, 1, 5000);
 
 		// clear background (scissors makes sure we only clear the region we own)
 		background(24);
@@ -136,6 +109,8 @@ public class MultiView_Onscreen extends PApplet {
 		fill(255, 128, 0);
 		text("cam " + ID, 10, 15);
 		cam.endHUD();
+
+		cam.endView();
 	}
 
 	public static void main(String args[]) {